@@ -17,5 +17,11 @@ public final class FeedReaderContract {
 
         public static final String COLUMN_NAME_USERID = "userid";
         public static final String COLUMN_NAME_SCORE = "score";
+        // milliseconds since the epoch, 0 for rows saved before version 2
+        public static final String COLUMN_NAME_TIMESTAMP = "timestamp";
+
+        // a user's scores in order, and everyone's for the leaderboard
+        public static final String INDEX_USERID_SCORE = "scores_userid_score";
+        public static final String INDEX_SCORE = "scores_score";
     }
 }
\ No newline at end of file
@@ -1,43 +1,138 @@
 package com.core.database;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 /**
  * Created by GWM on 2/5/17.
  */
 
 public class FeedReaderDbHelper extends SQLiteOpenHelper {
     // If you change the database schema, you must increment the database version.
-    public static final int DATABASE_VERSION = 1;
+    // Version 2 made userid an INTEGER and score a REAL, added the timestamp
+    // and indexed the table, see migrateToVersion2().
+    public static final int DATABASE_VERSION = 2;
     public static final String DATABASE_NAME = "FeedReader.db";
 
     private static final String SQL_CREATE_ENTRIES =
             "CREATE TABLE " + FeedReaderContract.FeedEntry.TABLE_NAME + " (" +
                     FeedReaderContract.FeedEntry._ID + " INTEGER PRIMARY KEY," +
-                    FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + " TEXT," +
-                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " TEXT)";
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + " INTEGER NOT NULL," +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " REAL NOT NULL," +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_TIMESTAMP + " INTEGER NOT NULL)";
+
+    private static final String SQL_CREATE_INDEX_USERID_SCORE =
+            "CREATE INDEX " + FeedReaderContract.FeedEntry.INDEX_USERID_SCORE + " ON " +
+                    FeedReaderContract.FeedEntry.TABLE_NAME + " (" +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + ", " +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + ")";
+
+    private static final String SQL_CREATE_INDEX_SCORE =
+            "CREATE INDEX " + FeedReaderContract.FeedEntry.INDEX_SCORE + " ON " +
+                    FeedReaderContract.FeedEntry.TABLE_NAME + " (" +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + ")";
 
     private static final String SQL_DELETE_ENTRIES =
             "DROP TABLE IF EXISTS " + FeedReaderContract.FeedEntry.TABLE_NAME;
 
+    // the old table while its rows are copied into a new one
+    private static final String TABLE_NAME_OLD = "scores_old";
+
     public FeedReaderDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
 
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(SQL_CREATE_ENTRIES);
+        db.execSQL(SQL_CREATE_INDEX_USERID_SCORE);
+        db.execSQL(SQL_CREATE_INDEX_SCORE);
     }
 
+    /*
+     * Runs inside a transaction, if any step fails the database stays at
+     * the old version with all its rows.
+     */
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        db.execSQL(SQL_DELETE_ENTRIES);
-        onCreate(db);
+        if (oldVersion < 2) {
+            migrateToVersion2(db);
+        }
+    }
+
+    /*
+     * Version 1 stored both columns as TEXT. The rows are copied into the
+     * typed table, and their time is unknown, so it is 0.
+     */
+    private void migrateToVersion2(SQLiteDatabase db) {
+        copyScores(db,
+                "CAST(" + FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + " AS INTEGER)",
+                "CAST(" + FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " AS REAL)",
+                "0");
     }
 
+    /*
+     * A newer version's schema is unknown here. Its scores are kept as long
+     * as its table still has the columns of this one, otherwise they can't
+     * be read and the table starts over.
+     */
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        onUpgrade(db, oldVersion, newVersion);
+        if (hasColumns(db, FeedReaderContract.FeedEntry._ID,
+                FeedReaderContract.FeedEntry.COLUMN_NAME_USERID,
+                FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE,
+                FeedReaderContract.FeedEntry.COLUMN_NAME_TIMESTAMP)) {
+            copyScores(db,
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_USERID,
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE,
+                    "COALESCE(" + FeedReaderContract.FeedEntry.COLUMN_NAME_TIMESTAMP + ", 0)");
+        } else {
+            db.execSQL(SQL_DELETE_ENTRIES);
+            onCreate(db);
+        }
+    }
+
+    /*
+     * Replaces the scores table with one of the current schema, selecting
+     * each row's values with the given expressions. Rows without a user or
+     * a score can't be shown and would break NOT NULL, so they are dropped.
+     */
+    private void copyScores(SQLiteDatabase db, String userId, String score, String timestamp) {
+        db.execSQL("ALTER TABLE " + FeedReaderContract.FeedEntry.TABLE_NAME
+                + " RENAME TO " + TABLE_NAME_OLD);
+        db.execSQL(SQL_CREATE_ENTRIES);
+        db.execSQL("INSERT INTO " + FeedReaderContract.FeedEntry.TABLE_NAME + " (" +
+                FeedReaderContract.FeedEntry._ID + ", " +
+                FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + ", " +
+                FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + ", " +
+                FeedReaderContract.FeedEntry.COLUMN_NAME_TIMESTAMP + ") SELECT " +
+                FeedReaderContract.FeedEntry._ID + ", " +
+                userId + ", " +
+                score + ", " +
+                timestamp + " FROM " + TABLE_NAME_OLD + " WHERE " +
+                FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + " IS NOT NULL AND " +
+                FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " IS NOT NULL");
+        // takes the old table's indexes with it, so the names are free again
+        db.execSQL("DROP TABLE " + TABLE_NAME_OLD);
+        // built once over the copied rows instead of row by row
+        db.execSQL(SQL_CREATE_INDEX_USERID_SCORE);
+        db.execSQL(SQL_CREATE_INDEX_SCORE);
+    }
+
+    private boolean hasColumns(SQLiteDatabase db, String... columns) {
+        final Cursor cursor = db.rawQuery("PRAGMA table_info("
+                + FeedReaderContract.FeedEntry.TABLE_NAME + ")", null);
+        final HashSet<String> names = new HashSet<>();
+        try {
+            final int name = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(name));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names.containsAll(Arrays.asList(columns));
     }
 }
@@ -5,6 +5,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -12,9 +13,23 @@ import java.util.List;
  */
 
 public interface IRepository<T> {
+    // return false to stop the walk
+    interface Visitor<T> {
+        boolean visit(T t);
+    }
+
+    // loads everything, only for small tables, prefer forEach() or page()
     List<T> getAll();
+    // streams every item in order from one cursor, holding one at a time
+    void forEach(Visitor<T> visitor);
+    // the limit items that follow after in order, the first ones for null
+    List<T> page(T after, int limit);
+    // the first k items in order
+    List<T> top(int k);
     T getById(int id);
     void add(T t);
+    // all of them at once, in one transaction where the storage has them
+    void addAll(Collection<T> items);
     void update(T t);
     void delete(int id);
 }
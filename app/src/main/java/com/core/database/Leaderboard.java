@@ -0,0 +1,52 @@
+package com.core.database;
+
+import android.content.Context;
+
+/**
+ * The scores of the whole process: one repository, the {@link LeaderboardCache}
+ * in front of it and the {@link ScoreWriteQueue} that writes through the
+ * cache.
+ *
+ * The game and the main menu share them, so a score saved in one is in the
+ * cache when the other shows the leaderboard, and the top list is read from
+ * the database once per process instead of once per game. They live as
+ * long as the process, the queue's thread is never stopped.
+ */
+public final class Leaderboard {
+    private static Leaderboard sInstance;
+
+    private final LeaderboardCache mCache;
+    private final ScoreWriteQueue mWriteQueue;
+
+    private Leaderboard(Context context) {
+        mCache = new LeaderboardCache(new ScoreRepository(context));
+        mWriteQueue = new ScoreWriteQueue(mCache);
+
+        // off the UI thread, the database may still have to be opened
+        mWriteQueue.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCache.load();
+            }
+        });
+    }
+
+    /*
+     * The process's leaderboard, created on first use. It only keeps the
+     * application context, never the caller.
+     */
+    public static synchronized Leaderboard get(Context context) {
+        if (sInstance == null) {
+            sInstance = new Leaderboard(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public LeaderboardCache getCache() {
+        return mCache;
+    }
+
+    public ScoreWriteQueue getWriteQueue() {
+        return mWriteQueue;
+    }
+}
@@ -0,0 +1,322 @@
+package com.core.database;
+
+import com.core.score.Score;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the leaderboard in memory in front of a score repository.
+ *
+ * The cache holds the best {@code topSize} scores, in the repository's order,
+ * and the best score of up to {@code maxUsers} users, dropping the user that
+ * was looked up least recently when it is full. Scores written through the
+ * cache update both in place, so after {@link #load()} the top list never
+ * has to be read back from the database.
+ *
+ * {@link #getTop()} and {@link #peekBest} only look at memory and are meant
+ * for the UI thread. Everything that may read the database, {@link #load()}
+ * and the {@link IRepository} methods on a miss, should run on a background
+ * thread such as the one of ScoreWriteQueue.
+ *
+ * The scores handed out belong to the cache, don't change them.
+ */
+public class LeaderboardCache implements IRepository<Score> {
+    public static final int DEFAULT_TOP_SIZE = 10;
+    public static final int DEFAULT_MAX_USERS = 64;
+
+    private final IRepository<Score> mRepository;
+    private final int mTopSize;
+
+    // best first, ties newest first, like the repository
+    private final ArrayList<Score> mTop;
+    // read without the lock, replaced on every change of mTop, null until
+    // the top list is loaded
+    private volatile List<Score> mTopView;
+
+    // best score by user, null for a user without scores, in access order
+    private final LinkedHashMap<Integer, Score> mBest;
+
+    // bumped by every write, so a slow read doesn't install stale rows
+    private long mGeneration;
+
+    // counted without the lock, getTop() doesn't take it
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private long mEvictions;
+
+    public LeaderboardCache(IRepository<Score> repository) {
+        this(repository, DEFAULT_TOP_SIZE, DEFAULT_MAX_USERS);
+    }
+
+    public LeaderboardCache(IRepository<Score> repository, int topSize, final int maxUsers) {
+        if (topSize <= 0) {
+            throw new IllegalArgumentException("topSize must be positive: " + topSize);
+        }
+        if (maxUsers <= 0) {
+            throw new IllegalArgumentException("maxUsers must be positive: " + maxUsers);
+        }
+        mRepository = repository;
+        mTopSize = topSize;
+        mTop = new ArrayList<>(topSize + 1);
+        mBest = new LinkedHashMap<Integer, Score>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Score> eldest) {
+                if (size() > maxUsers) {
+                    mEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /*
+     * Reads the top scores from the repository. Call it once on a background
+     * thread before the leaderboard is shown, until then getTop() is empty.
+     */
+    public void load() {
+        while (true) {
+            long generation;
+            synchronized (this) {
+                generation = mGeneration;
+            }
+            List<Score> top = mRepository.top(mTopSize);
+            synchronized (this) {
+                // a write came in while reading, it may or may not be in top
+                if (generation != mGeneration) {
+                    continue;
+                }
+                mTop.clear();
+                for (Score score : top) {
+                    mTop.add(copy(score));
+                }
+                publishTop();
+                return;
+            }
+        }
+    }
+
+    /*
+     * Forgets everything, the next reads go to the repository again.
+     */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mTop.clear();
+        mTopView = null;
+        mBest.clear();
+    }
+
+    public boolean isLoaded() {
+        return mTopView != null;
+    }
+
+    /*
+     * The best scores, never reads the database. Empty until load() is done.
+     */
+    public List<Score> getTop() {
+        List<Score> top = mTopView;
+        if (top == null) {
+            mMisses.incrementAndGet();
+            return Collections.emptyList();
+        }
+        mHits.incrementAndGet();
+        return top;
+    }
+
+    /*
+     * The best score of the user if it is cached, never reads the database.
+     * Also null if the user has no scores, isBestCached() tells the two
+     * apart.
+     */
+    public synchronized Score peekBest(int userId) {
+        Score best = mBest.get(userId);
+        if (best != null || mBest.containsKey(userId)) {
+            mHits.incrementAndGet();
+        } else {
+            mMisses.incrementAndGet();
+        }
+        return best;
+    }
+
+    public synchronized boolean isBestCached(int userId) {
+        return mBest.containsKey(userId);
+    }
+
+    /*
+     * The best score of the user, read from the repository and kept on a
+     * miss.
+     */
+    @Override
+    public Score getById(int userId) {
+        long generation;
+        synchronized (this) {
+            Score best = mBest.get(userId);
+            if (best != null || mBest.containsKey(userId)) {
+                mHits.incrementAndGet();
+                return best;
+            }
+            mMisses.incrementAndGet();
+            generation = mGeneration;
+        }
+        Score best = mRepository.getById(userId);
+        if (best != null) {
+            best = copy(best);
+        }
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mBest.put(userId, best);
+            }
+        }
+        return best;
+    }
+
+    /*
+     * The first k scores, from memory if they are all in the top list.
+     */
+    @Override
+    public List<Score> top(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        List<Score> top = mTopView;
+        // a top list shorter than mTopSize holds every score there is
+        if (top != null && (k <= top.size() || top.size() < mTopSize)) {
+            mHits.incrementAndGet();
+            return top.subList(0, Math.min(k, top.size()));
+        }
+        mMisses.incrementAndGet();
+        return mRepository.top(k);
+    }
+
+    @Override
+    public List<Score> page(Score after, int limit) {
+        if (after == null) {
+            return top(limit);
+        }
+        return mRepository.page(after, limit);
+    }
+
+    @Override
+    public List<Score> getAll() {
+        return mRepository.getAll();
+    }
+
+    @Override
+    public void forEach(Visitor<Score> visitor) {
+        mRepository.forEach(visitor);
+    }
+
+    /*
+     * Writes through to the repository, which sets the row id, then merges
+     * the score into the cache.
+     */
+    @Override
+    public void add(Score score) {
+        mRepository.add(score);
+        synchronized (this) {
+            mGeneration++;
+            boolean topChanged = merge(score);
+            if (topChanged) {
+                publishTop();
+            }
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Score> scores) {
+        mRepository.addAll(scores);
+        synchronized (this) {
+            mGeneration++;
+            boolean topChanged = false;
+            for (Score score : scores) {
+                topChanged |= merge(score);
+            }
+            if (topChanged) {
+                publishTop();
+            }
+        }
+    }
+
+    /*
+     * Changed or removed scores can't be merged, so these drop the cache.
+     */
+    @Override
+    public void update(Score score) {
+        mRepository.update(score);
+        invalidate();
+    }
+
+    @Override
+    public void delete(int id) {
+        mRepository.delete(id);
+        invalidate();
+    }
+
+    /*
+     * Puts a newly written score in the top list and the user's best if it
+     * beats them. Saved scores are the newest, so they go before any equal
+     * ones. Returns whether the top list changed.
+     */
+    private boolean merge(Score score) {
+        Score saved = null;
+
+        // a user that isn't cached may have a better score in the database
+        if (mBest.containsKey(score.getUserId())) {
+            Score best = mBest.get(score.getUserId());
+            if (best == null || score.getValue() >= best.getValue()) {
+                saved = copy(score);
+                mBest.put(score.getUserId(), saved);
+            }
+        }
+
+        if (mTopView == null) {
+            return false;
+        }
+        int size = mTop.size();
+        if (size == mTopSize && score.getValue() < mTop.get(size - 1).getValue()) {
+            return false;
+        }
+        int i = 0;
+        while (i < size && mTop.get(i).getValue() > score.getValue()) {
+            i++;
+        }
+        mTop.add(i, saved != null ? saved : copy(score));
+        if (mTop.size() > mTopSize) {
+            mTop.remove(mTopSize);
+        }
+        return true;
+    }
+
+    private void publishTop() {
+        mTopView = Collections.unmodifiableList(new ArrayList<>(mTop));
+    }
+
+    private static Score copy(Score score) {
+        return new Score(score.getId(), score.getUserId(), score.getValue());
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /*
+     * Users dropped from the cache to make room for others.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    public int getTopSize() {
+        return mTopSize;
+    }
+}
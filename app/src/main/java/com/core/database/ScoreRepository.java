@@ -1,36 +1,68 @@
 package com.core.database;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.core.score.Score;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Created by GWM on 6/5/17.
+ *
+ * Rows are inserted through one compiled statement that is only rebound per
+ * row, so SQLite parses the insert once instead of for every score. The
+ * statement isn't thread-safe, so the insert methods are synchronized.
  */
 
 public class ScoreRepository implements IRepository<Score> {
     private Context mContext;
     private FeedReaderDbHelper mDbHelper;
 
+    private static final String SQL_INSERT =
+            "INSERT INTO " + FeedReaderContract.FeedEntry.TABLE_NAME + " (" +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_USERID + ", " +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + ", " +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_TIMESTAMP + ") VALUES (?, ?, ?)";
+
+    // compiled against mInsertDb, see insertStatement()
+    private SQLiteStatement mInsert;
+    private SQLiteDatabase mInsertDb;
+
     public ScoreRepository(Context context) {
         mContext = context;
         mDbHelper = new FeedReaderDbHelper(this.mContext);
     }
 
-    public void writeDatabaseData(int userId, double score) {
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+    public synchronized void writeDatabaseData(int userId, double score) {
+        insert(insertStatement(), userId, score, System.currentTimeMillis());
+    }
 
-        ContentValues values = new ContentValues();
-        values.put(FeedReaderContract.FeedEntry.COLUMN_NAME_USERID, userId);
-        values.put(FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE, score);
+    /*
+     * The compiled insert, compiled again only if the helper reopened the
+     * database.
+     */
+    private SQLiteStatement insertStatement() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        if (mInsert == null || mInsertDb != db) {
+            if (mInsert != null) {
+                mInsert.close();
+            }
+            mInsert = db.compileStatement(SQL_INSERT);
+            mInsertDb = db;
+        }
+        return mInsert;
+    }
 
-        long newRowId = db.insert(FeedReaderContract.FeedEntry.TABLE_NAME, null, values);
+    private static long insert(SQLiteStatement insert, int userId, double score, long timestamp) {
+        insert.bindLong(1, userId);
+        insert.bindDouble(2, score);
+        insert.bindLong(3, timestamp);
+        return insert.executeInsert();
     }
 
     public void readDatabaseData() {
@@ -71,44 +103,121 @@ public class ScoreRepository implements IRepository<Score> {
         cursor.close();
     }
 
+    /*
+     * All reads below return the scores best first, ties newest first, by
+     * walking the score index backwards. The index holds the row id after
+     * the score, so that order needs no sort.
+     */
+    private static final String SORT_ORDER =
+            FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " DESC, " +
+                    FeedReaderContract.FeedEntry._ID + " DESC";
+
+    // everything after a given score and row id, see page()
+    private static final String SELECTION_AFTER =
+            FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " <= ? AND (" +
+                    FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " < ? OR " +
+                    FeedReaderContract.FeedEntry._ID + " < ?)";
+
+    private static final String[] PROJECTION = {
+            FeedReaderContract.FeedEntry._ID,
+            FeedReaderContract.FeedEntry.COLUMN_NAME_USERID,
+            FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE
+    };
+
+    /*
+     * Every score in one list. The history can be far too big for that on a
+     * small device, use forEach() or page() for anything but tests.
+     */
     @Override
     public List<Score> getAll() {
-        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        List<Score> scores = new ArrayList<>();
+        forEach(collect(scores));
+        return scores;
+    }
 
-        // Define a projection that specifies which columns from the database
-        // you will actually use after this query.
-        String[] projection = {
-                FeedReaderContract.FeedEntry._ID,
-                FeedReaderContract.FeedEntry.COLUMN_NAME_USERID,
-                FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE
+    /*
+     * Hands the scores to the visitor one by one straight from the cursor,
+     * so memory stays the same however long the history is.
+     */
+    @Override
+    public void forEach(Visitor<Score> visitor) {
+        query(null, null, null, visitor);
+    }
+
+    /*
+     * Keyset paging: the limit scores that come after the given one, which
+     * should be the last of the previous page. Unlike an OFFSET every page
+     * is a seek into the index, so page 1000 costs the same as page 1.
+     */
+    @Override
+    public List<Score> page(Score after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        List<Score> scores = new ArrayList<>(limit);
+        if (after == null) {
+            query(null, null, String.valueOf(limit), collect(scores));
+        } else {
+            String score = String.valueOf(after.getValue());
+            String[] selectionArgs = { score, score, String.valueOf(after.getId()) };
+            query(SELECTION_AFTER, selectionArgs, String.valueOf(limit), collect(scores));
+        }
+        return scores;
+    }
+
+    /*
+     * The k best scores. The query stops reading the index after k rows.
+     */
+    @Override
+    public List<Score> top(int k) {
+        return page(null, k);
+    }
+
+    private static Visitor<Score> collect(final List<Score> scores) {
+        return new Visitor<Score>() {
+            @Override
+            public boolean visit(Score score) {
+                scores.add(score);
+                return true;
+            }
         };
+    }
 
-        // How you want the results sorted in the resulting Cursor
-        String sortOrder =
-                FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE + " DESC";
+    private void query(String selection, String[] selectionArgs, String limit,
+                       Visitor<Score> visitor) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
 
         Cursor cursor = db.query(
                 FeedReaderContract.FeedEntry.TABLE_NAME,                     // The table to query
-                projection,                               // The columns to return
-                null, //selection,                                // The columns for the WHERE clause
-                null, //selectionArgs,                            // The values for the WHERE clause
+                PROJECTION,                               // The columns to return
+                selection,                                // The columns for the WHERE clause
+                selectionArgs,                            // The values for the WHERE clause
                 null,                                     // don't group the rows
                 null,                                     // don't filter by row groups
-                sortOrder                                 // The sort order
+                SORT_ORDER,                               // The sort order
+                limit                                     // how many rows, null for all
         );
 
-        List itemIds = new ArrayList<>();
-        while(cursor.moveToNext()) {
-            long itemId = cursor.getLong(
-                    cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry._ID));
-            itemIds.add(itemId);
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry._ID);
+            int userIdColumn = cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry.COLUMN_NAME_USERID);
+            int scoreColumn = cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE);
+            while (cursor.moveToNext()) {
+                Score score = new Score(cursor.getLong(idColumn), cursor.getInt(userIdColumn),
+                        cursor.getDouble(scoreColumn));
+                if (!visitor.visit(score)) {
+                    break;
+                }
+            }
+        } finally {
+            cursor.close();
         }
-
-        cursor.close();
-
-        return itemIds;
     }
 
+    /*
+     * The best score of the user, found in the (userid, score) index
+     * without touching the other rows.
+     */
     @Override
     public Score getById(int id) {
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
@@ -117,7 +226,6 @@ public class ScoreRepository implements IRepository<Score> {
         // you will actually use after this query.
         String[] projection = {
                 FeedReaderContract.FeedEntry._ID,
-                FeedReaderContract.FeedEntry.COLUMN_NAME_USERID,
                 FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE
         };
 
@@ -131,25 +239,55 @@ public class ScoreRepository implements IRepository<Score> {
                 selectionArgs,                            // The values for the WHERE clause
                 null,                                     // don't group the rows
                 null,                                     // don't filter by row groups
-                null                                 // The sort order
+                SORT_ORDER,                               // the newest of equal bests
+                "1"                                       // only the best one
         );
 
         Score s = null;
-        while(cursor.moveToNext()) {
-            s = new Score(id, cursor.getDouble(cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE)));
+        try {
+            if (cursor.moveToNext()) {
+                s = new Score(cursor.getLong(cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry._ID)),
+                        id, cursor.getDouble(cursor.getColumnIndexOrThrow(FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE)));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
 
         return s;
     }
 
     @Override
-    public void add(Score score) {
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(FeedReaderContract.FeedEntry.COLUMN_NAME_USERID, score.getUserId());
-        values.put(FeedReaderContract.FeedEntry.COLUMN_NAME_SCORE, score.getValue());
-        long newRowId = db.insert(FeedReaderContract.FeedEntry.TABLE_NAME, null, values);
+    public synchronized void add(Score score) {
+        score.setId(insert(insertStatement(), score.getUserId(), score.getValue(),
+                System.currentTimeMillis()));
+    }
+
+    /*
+     * Inserts all scores in one transaction, so they cost one sync together
+     * and either all of them are saved or none. They share one timestamp.
+     * Every score gets the row id it was saved under, or 0 again if the
+     * transaction was rolled back.
+     */
+    @Override
+    public synchronized void addAll(Collection<Score> scores) {
+        SQLiteStatement insert = insertStatement();
+        long timestamp = System.currentTimeMillis();
+        boolean saved = false;
+        mInsertDb.beginTransaction();
+        try {
+            for (Score score : scores) {
+                score.setId(insert(insert, score.getUserId(), score.getValue(), timestamp));
+            }
+            mInsertDb.setTransactionSuccessful();
+            saved = true;
+        } finally {
+            mInsertDb.endTransaction();
+            if (!saved) {
+                for (Score score : scores) {
+                    score.setId(0);
+                }
+            }
+        }
     }
 
     @Override
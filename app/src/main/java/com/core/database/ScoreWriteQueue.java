@@ -0,0 +1,258 @@
+package com.core.database;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.core.score.Score;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue in front of a {@link ScoreRepository}, or of a
+ * {@link LeaderboardCache} that writes through to one.
+ *
+ * The game hands scores to {@link #add} from whatever thread it runs on and
+ * never waits for the disk. The scores are written on a background thread in
+ * a single transaction, once FLUSH_COUNT of them were queued or FLUSH_DELAY_MS
+ * after the first one, whichever comes first, so there is one sync per batch
+ * instead of one per captured ball.
+ *
+ * Every score is written, in the order it was queued, so the history of a
+ * user keeps all of its scores. A batch that fails stays at the head of the
+ * queue and is tried again with the next flush, up to MAX_ATTEMPTS times
+ * before it is dropped.
+ *
+ * Call {@link #flush} when the activity pauses and {@link #flushAndWait}
+ * when it stops, the process may be killed without further notice after
+ * that. Waiting blocks the caller, so keep the timeout well inside the ANR
+ * budget of the main thread.
+ */
+public class ScoreWriteQueue {
+    // queued scores that trigger a write right away
+    public static final int FLUSH_COUNT = 32;
+    // longest a score waits before it is written
+    public static final long FLUSH_DELAY_MS = 2000;
+    // writes of the same scores before they are given up
+    public static final int MAX_ATTEMPTS = 3;
+
+    private static final String TAG = "ScoreWriteQueue";
+
+    private final IRepository<Score> mRepository;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    private final Object mLock = new Object();
+    // pending scores in the order they were queued, and the list of the
+    // batch being written, swapped on every flush
+    private ArrayList<Score> mPending = new ArrayList<>();
+    private ArrayList<Score> mWriting = new ArrayList<>();
+    private boolean mFlushScheduled;
+    private boolean mClosed;
+
+    // only touched on the writer thread
+    private int mWritten;
+    private int mBatches;
+    private int mFailedAttempts;
+    private int mDropped;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flushPending();
+        }
+    };
+
+    public ScoreWriteQueue(IRepository<Score> repository) {
+        mRepository = repository;
+        mThread = new HandlerThread("score-writer", Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /*
+     * Queues a score for writing. Safe to call from any thread, it only
+     * holds a lock for as long as it takes to put the score in a list.
+     */
+    public void add(Score score) {
+        synchronized (mLock) {
+            if (mClosed) {
+                throw new IllegalStateException("ScoreWriteQueue is closed");
+            }
+            mPending.add(score);
+            if (mPending.size() >= FLUSH_COUNT) {
+                mHandler.removeCallbacks(mFlush);
+                mHandler.post(mFlush);
+                mFlushScheduled = true;
+            } else if (!mFlushScheduled) {
+                mHandler.postDelayed(mFlush, FLUSH_DELAY_MS);
+                mFlushScheduled = true;
+            }
+        }
+    }
+
+    /*
+     * Writes everything queued so far without waiting for it.
+     */
+    public void flush() {
+        mHandler.removeCallbacks(mFlush);
+        mHandler.post(mFlush);
+    }
+
+    /*
+     * Writes everything queued so far and waits for it, at most
+     * timeoutMillis.
+     *
+     * @return false if the write didn't finish in time or failed, the
+     * scores are then still queued unless they failed MAX_ATTEMPTS times
+     */
+    public boolean flushAndWait(long timeoutMillis) {
+        final CountDownLatch done = new CountDownLatch(1);
+        final boolean[] written = new boolean[1];
+        mHandler.removeCallbacks(mFlush);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                written[0] = flushPending();
+                done.countDown();
+            }
+        });
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    // the latch orders the read after the write
+                    return done.await(timeoutMillis, TimeUnit.MILLISECONDS) && written[0];
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Runs the task on the writer thread, after the scores queued so far were
+     * written. For reads that shouldn't block the caller, like loading the
+     * leaderboard.
+     */
+    public void execute(final Runnable task) {
+        mHandler.removeCallbacks(mFlush);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                flushPending();
+                task.run();
+            }
+        });
+    }
+
+    /*
+     * Writes what is still queued and stops the writer thread. Scores can't
+     * be added afterwards.
+     */
+    public void close() {
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+        }
+        mHandler.removeCallbacks(mFlush);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                flushPending();
+                mThread.quit();
+            }
+        });
+    }
+
+    /*
+     * Runs on the writer thread. Returns whether everything that was queued
+     * got written.
+     */
+    private boolean flushPending() {
+        final ArrayList<Score> batch;
+        synchronized (mLock) {
+            mFlushScheduled = false;
+            if (mPending.isEmpty()) {
+                return true;
+            }
+            batch = mPending;
+            mPending = mWriting;
+            mWriting = batch;
+        }
+
+        try {
+            mRepository.addAll(batch);
+            mWritten += batch.size();
+            mBatches++;
+            mFailedAttempts = 0;
+        } catch (RuntimeException e) {
+            if (++mFailedAttempts < MAX_ATTEMPTS) {
+                Log.w(TAG, "Cannot save " + batch.size() + " scores, trying again", e);
+                requeue(batch);
+                return false;
+            }
+            Log.e(TAG, "Cannot save " + batch.size() + " scores, dropping them", e);
+            mFailedAttempts = 0;
+            mDropped += batch.size();
+            batch.clear();
+            return false;
+        }
+        batch.clear();
+        return true;
+    }
+
+    /*
+     * Puts a failed batch back in front of the scores queued since and
+     * makes sure another flush comes.
+     */
+    private void requeue(ArrayList<Score> batch) {
+        synchronized (mLock) {
+            batch.addAll(mPending);
+            mPending.clear();
+            mWriting = mPending;
+            mPending = batch;
+            if (!mFlushScheduled && !mClosed) {
+                mHandler.postDelayed(mFlush, FLUSH_DELAY_MS);
+                mFlushScheduled = true;
+            }
+        }
+    }
+
+    /*
+     * For tests, which have to run the writer's tasks themselves under
+     * Robolectric.
+     */
+    Looper getLooper() {
+        return mThread.getLooper();
+    }
+
+    /*
+     * Scores and transactions written so far. Only meaningful after
+     * flushAndWait().
+     */
+    public int getWrittenCount() {
+        return mWritten;
+    }
+
+    public int getBatchCount() {
+        return mBatches;
+    }
+
+    /*
+     * Scores given up after MAX_ATTEMPTS failed writes.
+     */
+    public int getDroppedCount() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,158 @@
+package com.core.game;
+
+import com.core.metrics.FrameProfiler;
+import com.core.physics.FastRandom;
+import com.core.physics.KinematicBody;
+import com.core.physics.ParticleEngine;
+import com.core.physics.WaypointPath;
+
+/**
+ * The rules of the game on top of the physics: cups travel their paths and
+ * swallow the balls that roll into them, and once the last ball would be
+ * swallowed the table is refilled with more balls than last time.
+ *
+ * Nothing in here depends on Android, so the same game runs on the device,
+ * in a replay and in a headless scenario. Sound and score are left to the
+ * {@link Listener}.
+ */
+public class GameWorld implements ParticleEngine.ParticleVisitor {
+    // balls on the first refill, every refill after that brings 20% more
+    public static final int FIRST_REFILL = 5;
+    // refills stop growing once they reach this many balls
+    public static final int MAX_REFILL = 15;
+
+    public interface Listener {
+        /*
+         * A cup swallowed the ball at index. The ball is removed at the end
+         * of the step, so the index stays valid until then.
+         */
+        void onCapture(int index);
+    }
+
+    private final ParticleEngine mEngine;
+    private final KinematicBody[] mCups;
+    private Listener mListener;
+    private FrameProfiler mProfiler;
+
+    private int mRefillBalls = FIRST_REFILL;
+    private int mCaptureCount;
+    private int mRefillCount;
+
+    public GameWorld(ParticleEngine engine, KinematicBody[] cups) {
+        mEngine = engine;
+        mCups = cups;
+    }
+
+    /*
+     * Spreads cups that start on the same path evenly along it, so they
+     * don't all travel on top of each other.
+     */
+    public static void spreadAlongPath(KinematicBody[] cups, float dT) {
+        for (int i = 1; i < cups.length; i++) {
+            final WaypointPath path = cups[i].getPath();
+            final float lapTime = path.getLength() / path.getSpeed();
+            cups[i].advance(i * lapTime / cups.length, dT);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /*
+     * Times the step and capture phases, and the engine's own phases. Set it
+     * before the simulation thread starts or from that thread.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        mProfiler = profiler;
+        mEngine.setProfiler(profiler);
+    }
+
+    /*
+     * Drops a ball at a random spot up to a meter right of and above the
+     * center, the table bounds pull it back onto the table.
+     */
+    public void addBall() {
+        final FastRandom random = mEngine.getRandom();
+        mEngine.addParticle(random.nextFloat(), random.nextFloat());
+    }
+
+    /*
+     * Advances the game by one fixed step of dT seconds under the given
+     * tilt.
+     */
+    public void step(float sx, float sy, float dT) {
+        final FrameProfiler profiler = mProfiler;
+        if (profiler != null) {
+            profiler.begin(FrameProfiler.PHASE_STEP);
+        }
+
+        mEngine.update(sx, sy, dT);
+
+        if (profiler != null) {
+            profiler.begin(FrameProfiler.PHASE_CAPTURE);
+        }
+        final KinematicBody[] cups = mCups;
+        for (KinematicBody cup : cups) {
+            cup.computePhysics(dT);
+        }
+        /*
+         * The engine's grid only returns the balls near each cup, so this
+         * costs the same however many balls are on the table.
+         */
+        for (KinematicBody cup : cups) {
+            mEngine.queryBox(cup, this);
+        }
+        mEngine.flushDespawns();
+
+        if (profiler != null) {
+            profiler.end(FrameProfiler.PHASE_CAPTURE);
+            profiler.end(FrameProfiler.PHASE_STEP);
+        }
+    }
+
+    /*
+     * A ball is in a cup.
+     */
+    @Override
+    public void visit(int index) {
+        if (mEngine.isDespawned(index)) {
+            // already swallowed by another cup this step
+            return;
+        }
+
+        if (mEngine.getLiveParticleCount() == 1) {
+            // the last ball stays and brings company
+            if (mRefillBalls < MAX_REFILL) {
+                mRefillBalls = (int) (mRefillBalls * 1.2);
+            }
+            for (int i = 0; i < mRefillBalls; i++) {
+                addBall();
+            }
+            mRefillCount++;
+            return;
+        }
+
+        mCaptureCount++;
+        if (mListener != null) {
+            mListener.onCapture(index);
+        }
+        mEngine.despawn(index);
+    }
+
+    public ParticleEngine getEngine() {
+        return mEngine;
+    }
+
+    public KinematicBody[] getCups() {
+        return mCups;
+    }
+
+    public int getCaptureCount() {
+        return mCaptureCount;
+    }
+
+    public int getRefillCount() {
+        return mRefillCount;
+    }
+}
@@ -0,0 +1,226 @@
+package com.core.game;
+
+import com.core.physics.FixedStepClock;
+import com.core.physics.ParticleEngine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trades simulation quality for frame rate when the device can't keep up.
+ *
+ * The governor watches how busy the game is: the time the simulation thread
+ * spends stepping and the time the UI thread spends drawing, over windows of
+ * {@link #WINDOW_NANOS}. When the busy share of a window goes over the
+ * target budget, or the clock had to drop time, it steps down one quality
+ * level at once. It only steps back up after {@link #UPGRADE_WINDOWS} windows
+ * in a row well under budget, and waits twice as long every time an upgrade
+ * has to be taken back, so a device on the edge settles instead of
+ * flip-flopping between two levels.
+ *
+ * Each level lowers the simulation rate and the solver's iteration budget,
+ * see {@link #getStepHz} and {@link #getMaxIterations}. Drawing the balls is
+ * one blit of a sprite already scaled to size per ball, so it has no cheaper
+ * setting worth a level. The clock and the engine are changed here, on the
+ * simulation thread; {@link #getLevel()} may be read from any thread.
+ */
+public class QualityGovernor {
+    public static final int LEVEL_BEST = 0;
+    public static final int LEVEL_COUNT = 4;
+
+    // the game may use this share of every frame, the rest is left to the system
+    public static final float DEFAULT_BUDGET = 0.75f;
+
+    // length of one measurement window
+    public static final long WINDOW_NANOS = 500000000L;
+    // windows in a row under UPGRADE_SHARE of the budget before stepping up
+    public static final int UPGRADE_WINDOWS = 4;
+    // the longest the governor waits before trying an upgrade again
+    public static final int MAX_UPGRADE_WINDOWS = 64;
+
+    // a level up costs up to twice as much, so only go up with room for that
+    private static final float UPGRADE_SHARE = 0.45f;
+
+    private static final int[] STEP_HZ = {60, 60, 45, 30};
+    private static final int[] MAX_ITERATIONS = {ParticleEngine.NUM_MAX_ITERATIONS, 6, 4, 3};
+
+    public interface Listener {
+        /*
+         * The governor switched to another level. Called on the simulation
+         * thread after the clock and engine were updated.
+         */
+        void onQualityChanged(int level);
+    }
+
+    private final FixedStepClock mClock;
+    private final ParticleEngine mEngine;
+    private final float mBudget;
+    private Listener mListener;
+
+    private volatile int mLevel = LEVEL_BEST;
+
+    // drawing is timed on the UI thread and collected on the simulation thread
+    private final AtomicLong mDrawNanos = new AtomicLong();
+
+    // only touched on the simulation thread
+    private long mWindowStart = Long.MIN_VALUE;
+    private long mStepNanos;
+    private long mDroppedNanos;
+    private int mQuietWindows;
+    private int mUpgradeWindows = UPGRADE_WINDOWS;
+    private boolean mJustUpgraded;
+    private float mLastLoad;
+    private int mDowngrades;
+    private int mUpgrades;
+
+    public QualityGovernor(FixedStepClock clock, ParticleEngine engine) {
+        this(clock, engine, DEFAULT_BUDGET);
+    }
+
+    /*
+     * budget is the share of wall time, in (0, 1], the game may keep the
+     * threads busy for.
+     */
+    public QualityGovernor(FixedStepClock clock, ParticleEngine engine, float budget) {
+        if (!(budget > 0 && budget <= 1)) {
+            throw new IllegalArgumentException("budget must be in (0, 1]: " + budget);
+        }
+        mClock = clock;
+        mEngine = engine;
+        mBudget = budget;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /*
+     * Switches to the given level right away, e.g. to start a known slow
+     * device lower. Only call it on the simulation thread or while the
+     * simulation is stopped.
+     */
+    public void setLevel(int level) {
+        if (level < LEVEL_BEST || level >= LEVEL_COUNT) {
+            throw new IllegalArgumentException("level out of range: " + level);
+        }
+        apply(level);
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public static int getStepHz(int level) {
+        return STEP_HZ[level];
+    }
+
+    public static int getMaxIterations(int level) {
+        return MAX_ITERATIONS[level];
+    }
+
+    /*
+     * Time the UI thread spent drawing one frame. Safe to call from any
+     * thread.
+     */
+    public void recordDraw(long nanos) {
+        mDrawNanos.addAndGet(nanos);
+    }
+
+    /*
+     * Time the simulation thread spent on the steps of one wake-up.
+     */
+    public void recordSteps(long nanos) {
+        mStepNanos += nanos;
+    }
+
+    /*
+     * Called on the simulation thread after every wake-up with the current
+     * monotonic time. Closes the window once it is long enough and decides
+     * whether to change level.
+     */
+    public void onFrame(long nowNanos) {
+        if (mWindowStart == Long.MIN_VALUE) {
+            startWindow(nowNanos);
+            return;
+        }
+        final long elapsed = nowNanos - mWindowStart;
+        if (elapsed < WINDOW_NANOS) {
+            return;
+        }
+
+        final long busy = mStepNanos + mDrawNanos.getAndSet(0);
+        final float load = (float) busy / elapsed;
+        final boolean dropped = mClock.getDroppedNanos() != mDroppedNanos;
+        mLastLoad = load;
+        startWindow(nowNanos);
+
+        final int level = mLevel;
+        if (load > mBudget || dropped) {
+            mQuietWindows = 0;
+            if (mJustUpgraded) {
+                // the level we came from was too slow after all, wait longer next time
+                mUpgradeWindows = Math.min(mUpgradeWindows * 2, MAX_UPGRADE_WINDOWS);
+            }
+            mJustUpgraded = false;
+            if (level + 1 < LEVEL_COUNT) {
+                mDowngrades++;
+                apply(level + 1);
+            }
+        } else if (load < mBudget * UPGRADE_SHARE) {
+            mJustUpgraded = false;
+            if (level > LEVEL_BEST && ++mQuietWindows >= mUpgradeWindows) {
+                mQuietWindows = 0;
+                mJustUpgraded = true;
+                mUpgrades++;
+                apply(level - 1);
+            }
+        } else {
+            mQuietWindows = 0;
+            mJustUpgraded = false;
+        }
+    }
+
+    /*
+     * Forgets the running window, e.g. when the simulation is paused, so the
+     * pause doesn't count as idle time.
+     */
+    public void reset() {
+        mWindowStart = Long.MIN_VALUE;
+        mQuietWindows = 0;
+        mJustUpgraded = false;
+        mDrawNanos.set(0);
+    }
+
+    private void startWindow(long nowNanos) {
+        mWindowStart = nowNanos;
+        mStepNanos = 0;
+        mDroppedNanos = mClock.getDroppedNanos();
+    }
+
+    private void apply(int level) {
+        mClock.setStepHz(STEP_HZ[level]);
+        mEngine.setMaxIterations(MAX_ITERATIONS[level]);
+        mLevel = level;
+        if (mListener != null) {
+            mListener.onQualityChanged(level);
+        }
+    }
+
+    /*
+     * Busy share of wall time in the last closed window.
+     */
+    public float getLastLoad() {
+        return mLastLoad;
+    }
+
+    public float getBudget() {
+        return mBudget;
+    }
+
+    public int getDowngrades() {
+        return mDowngrades;
+    }
+
+    public int getUpgrades() {
+        return mUpgrades;
+    }
+}
@@ -0,0 +1,116 @@
+package com.core.input;
+
+import com.core.physics.FixedStepClock;
+import com.core.physics.ParticleEngine;
+import com.core.physics.SimulationLoop;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays a stream written by {@link InputRecorder}.
+ *
+ * The recorded frame timestamps drive a {@link FixedStepClock} exactly like
+ * {@link SimulationLoop} does on the device, so the callback sees the same
+ * bounds, the same tilt and the same number of steps in the same order. A
+ * simulation built with {@link #getSeed()} and set up with
+ * {@link #applySettings} therefore ends up bit-for-bit in the recorded state.
+ */
+public class InputPlayer implements Closeable {
+    private final DataInputStream mIn;
+    private final long mSeed;
+    private final int mStepHz;
+    private final int mMaxStepsPerFrame;
+    private final int mMaxIterations;
+    private final float mPenetrationTolerance;
+    private final int mFlags;
+
+    public InputPlayer(InputStream in) throws IOException {
+        mIn = new DataInputStream(new BufferedInputStream(in));
+        if (mIn.readInt() != InputRecorder.MAGIC) {
+            throw new IOException("Not an input recording");
+        }
+        final int version = mIn.readUnsignedShort();
+        if (version != InputRecorder.VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+        mSeed = mIn.readLong();
+        mStepHz = mIn.readInt();
+        mMaxStepsPerFrame = mIn.readInt();
+        mMaxIterations = mIn.readInt();
+        mPenetrationTolerance = mIn.readFloat();
+        mFlags = mIn.readUnsignedByte();
+    }
+
+    /*
+     * Seed the recorded simulation was built with.
+     */
+    public long getSeed() {
+        return mSeed;
+    }
+
+    /*
+     * Sets the clock and the engine up like they were while recording. Call
+     * it before play().
+     */
+    public void applySettings(FixedStepClock clock, ParticleEngine engine) {
+        clock.setStepHz(mStepHz);
+        clock.setMaxStepsPerFrame(mMaxStepsPerFrame);
+        engine.setMaxIterations(mMaxIterations);
+        engine.setPenetrationTolerance(mPenetrationTolerance);
+        engine.setWarmStarting((mFlags & InputRecorder.FLAG_WARM_STARTING) != 0);
+        engine.setContinuousCollision((mFlags & InputRecorder.FLAG_CONTINUOUS_COLLISION) != 0);
+        engine.setSleepingEnabled((mFlags & InputRecorder.FLAG_SLEEPING) != 0);
+        engine.setBroadphaseEnabled((mFlags & InputRecorder.FLAG_BROADPHASE) != 0);
+    }
+
+    /**
+     * Feeds the whole recording into the callback.
+     *
+     * @return the number of frames played
+     */
+    public int play(FixedStepClock clock, SimulationLoop.Callback callback) throws IOException {
+        float x = 0;
+        float y = 0;
+        long sampleNanos = 0;
+        int frames = 0;
+        clock.reset();
+        while (true) {
+            final int tag;
+            try {
+                tag = mIn.readByte();
+            } catch (EOFException e) {
+                return frames;
+            }
+            switch (tag) {
+                case InputRecorder.TAG_RESET:
+                    clock.reset();
+                    break;
+                case InputRecorder.TAG_BOUNDS:
+                    callback.onBounds(mIn.readFloat(), mIn.readFloat());
+                    break;
+                case InputRecorder.TAG_SAMPLE:
+                    sampleNanos = mIn.readLong();
+                    x = mIn.readFloat();
+                    y = mIn.readFloat();
+                    break;
+                case InputRecorder.TAG_FRAME:
+                    final long now = mIn.readLong();
+                    SimulationLoop.runFrame(clock, callback, now, x, y, sampleNanos);
+                    frames++;
+                    break;
+                default:
+                    throw new IOException("Corrupt recording, unknown record " + tag);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+}
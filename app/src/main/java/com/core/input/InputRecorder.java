@@ -0,0 +1,144 @@
+package com.core.input;
+
+import com.core.physics.FixedStepClock;
+import com.core.physics.ParticleEngine;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes everything that feeds the simulation to a compact binary stream, so
+ * a session can be replayed exactly with {@link InputPlayer}.
+ *
+ * The stream starts with a header holding the random seed the simulation was
+ * built with and the clock and engine settings it ran with, which the player
+ * puts back with {@link InputPlayer#applySettings}. The settings must not
+ * change while recording, so the quality governor has to stay off. Then
+ * follow tagged records:
+ *
+ * <pre>
+ *   'R'                              clock reset (simulation (re)started)
+ *   'B' float h, float v             new table bounds in meters
+ *   'S' long nanos, float x, float y accelerometer sample
+ *   'F' long nanos                   frame, the clock was advanced to nanos
+ * </pre>
+ *
+ * All records must come from the simulation thread, in the order the
+ * simulation consumed them. Like {@link java.io.PrintStream}, the record
+ * methods never throw; after the first I/O error recording stops and
+ * {@link #checkError()} returns true.
+ */
+public class InputRecorder implements Closeable {
+    static final int MAGIC = 0x50464952; // "PFIR"
+    static final int VERSION = 2;
+
+    // engine switches in the header
+    static final int FLAG_WARM_STARTING = 1;
+    static final int FLAG_CONTINUOUS_COLLISION = 2;
+    static final int FLAG_SLEEPING = 4;
+    static final int FLAG_BROADPHASE = 8;
+
+    static final byte TAG_RESET = 'R';
+    static final byte TAG_BOUNDS = 'B';
+    static final byte TAG_SAMPLE = 'S';
+    static final byte TAG_FRAME = 'F';
+
+    private final DataOutputStream mOut;
+    private boolean mError;
+
+    public InputRecorder(OutputStream out, long seed, FixedStepClock clock,
+                         ParticleEngine engine) throws IOException {
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+        mOut.writeInt(MAGIC);
+        mOut.writeShort(VERSION);
+        mOut.writeLong(seed);
+
+        mOut.writeInt(clock.getStepHz());
+        mOut.writeInt(clock.getMaxStepsPerFrame());
+        mOut.writeInt(engine.getMaxIterations());
+        mOut.writeFloat(engine.getPenetrationTolerance());
+        int flags = 0;
+        if (engine.isWarmStarting()) {
+            flags |= FLAG_WARM_STARTING;
+        }
+        if (engine.isContinuousCollision()) {
+            flags |= FLAG_CONTINUOUS_COLLISION;
+        }
+        if (engine.isSleepingEnabled()) {
+            flags |= FLAG_SLEEPING;
+        }
+        if (engine.isBroadphaseEnabled()) {
+            flags |= FLAG_BROADPHASE;
+        }
+        mOut.writeByte(flags);
+    }
+
+    public void recordReset() {
+        if (mError) {
+            return;
+        }
+        try {
+            mOut.writeByte(TAG_RESET);
+        } catch (IOException e) {
+            mError = true;
+        }
+    }
+
+    public void recordBounds(float horizontalBound, float verticalBound) {
+        if (mError) {
+            return;
+        }
+        try {
+            mOut.writeByte(TAG_BOUNDS);
+            mOut.writeFloat(horizontalBound);
+            mOut.writeFloat(verticalBound);
+        } catch (IOException e) {
+            mError = true;
+        }
+    }
+
+    public void recordSample(long timestampNanos, float x, float y) {
+        if (mError) {
+            return;
+        }
+        try {
+            mOut.writeByte(TAG_SAMPLE);
+            mOut.writeLong(timestampNanos);
+            mOut.writeFloat(x);
+            mOut.writeFloat(y);
+        } catch (IOException e) {
+            mError = true;
+        }
+    }
+
+    public void recordFrame(long nowNanos) {
+        if (mError) {
+            return;
+        }
+        try {
+            mOut.writeByte(TAG_FRAME);
+            mOut.writeLong(nowNanos);
+        } catch (IOException e) {
+            mError = true;
+        }
+    }
+
+    public boolean checkError() {
+        if (!mError) {
+            try {
+                mOut.flush();
+            } catch (IOException e) {
+                mError = true;
+            }
+        }
+        return mError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+}
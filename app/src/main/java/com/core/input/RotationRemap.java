@@ -0,0 +1,67 @@
+package com.core.input;
+
+/**
+ * Maps accelerometer readings from the device's natural orientation into the
+ * coordinate space of the rotated screen.
+ *
+ * The 2x2 matrix is only rebuilt when the rotation changes, so remapping a
+ * sample is four multiplies instead of a display query per sensor event.
+ * Rotations are in quarter turns, matching Surface.ROTATION_0 to
+ * Surface.ROTATION_270.
+ */
+public class RotationRemap {
+    private int mRotation = -1;
+    private float mXX;
+    private float mXY;
+    private float mYX;
+    private float mYY;
+
+    public RotationRemap() {
+        setRotation(0);
+    }
+
+    /*
+     * @return true if the rotation changed
+     */
+    public boolean setRotation(int rotation) {
+        rotation &= 3;
+        if (rotation == mRotation) {
+            return false;
+        }
+        mRotation = rotation;
+        switch (rotation) {
+            case 0:
+                set(1, 0, 0, 1);
+                break;
+            case 1:
+                set(0, -1, 1, 0);
+                break;
+            case 2:
+                set(-1, 0, 0, -1);
+                break;
+            case 3:
+                set(0, 1, -1, 0);
+                break;
+        }
+        return true;
+    }
+
+    public int getRotation() {
+        return mRotation;
+    }
+
+    public float remapX(float x, float y) {
+        return mXX * x + mXY * y;
+    }
+
+    public float remapY(float x, float y) {
+        return mYX * x + mYY * y;
+    }
+
+    private void set(float xx, float xy, float yx, float yy) {
+        mXX = xx;
+        mXY = xy;
+        mYX = yx;
+        mYY = yy;
+    }
+}
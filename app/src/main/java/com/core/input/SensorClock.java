@@ -0,0 +1,61 @@
+package com.core.input;
+
+/**
+ * Maps sensor event timestamps onto the System.nanoTime() clock.
+ *
+ * Most devices timestamp sensor events with elapsedRealtimeNanos(), which
+ * keeps counting in deep sleep, some with System.nanoTime(), which doesn't.
+ * Which one can't be told from a single timestamp when the two clocks are
+ * close, so the clock is picked once, from the first event after
+ * {@link #reset()}: that event was produced just before it arrived, so its
+ * timestamp is nearest to the clock it was taken on. Every later timestamp
+ * is shifted by the same offset, which holds until the device sleeps, and
+ * the sensor is unregistered before that can happen.
+ *
+ * If the two clocks are so close that the first event lands nearer the
+ * wrong one, they differ by less than the event's latency and so does every
+ * mapped timestamp.
+ */
+public class SensorClock {
+    private boolean mCalibrated;
+    private long mOffset;
+
+    /*
+     * Calibrates again on the next event, call it whenever the sensor is
+     * registered.
+     */
+    public void reset() {
+        mCalibrated = false;
+    }
+
+    /**
+     * @param sensorNanos the event's timestamp
+     * @param nanoTime System.nanoTime() when the event arrived
+     * @param elapsedRealtimeNanos elapsedRealtimeNanos() when the event
+     *                             arrived
+     * @return the timestamp on the System.nanoTime() clock
+     */
+    public long toNanoTime(long sensorNanos, long nanoTime, long elapsedRealtimeNanos) {
+        if (!mCalibrated) {
+            mCalibrated = true;
+            if (Math.abs(sensorNanos - nanoTime) <= Math.abs(sensorNanos - elapsedRealtimeNanos)) {
+                mOffset = 0;
+            } else {
+                mOffset = nanoTime - elapsedRealtimeNanos;
+            }
+        }
+        return sensorNanos + mOffset;
+    }
+
+    public boolean isCalibrated() {
+        return mCalibrated;
+    }
+
+    /*
+     * What is added to every sensor timestamp, 0 if the sensor is on
+     * System.nanoTime().
+     */
+    public long getOffset() {
+        return mOffset;
+    }
+}
@@ -0,0 +1,101 @@
+package com.core.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer, single-consumer queue of timestamped 2D sensor
+ * samples.
+ *
+ * One thread (the sensor callback) may call {@link #offer}, one other thread
+ * (the simulation) may call {@link #poll} and {@link #drain}. Samples are kept
+ * in parallel primitive arrays, so neither side allocates. When the consumer
+ * falls behind and the buffer is full, new samples are dropped and counted.
+ */
+public class SensorRingBuffer {
+    private final int mMask;
+    private final long[] mTimestamps;
+    private final float[] mX;
+    private final float[] mY;
+
+    // next slot to write, only advanced by the producer
+    private final AtomicLong mHead = new AtomicLong();
+    // next slot to read, only advanced by the consumer
+    private final AtomicLong mTail = new AtomicLong();
+    // producer-local copy of mTail, refreshed only when the buffer looks full
+    private long mCachedTail;
+
+    private final AtomicLong mDropped = new AtomicLong();
+
+    public interface Consumer {
+        void onSample(long timestampNanos, float x, float y);
+    }
+
+    /*
+     * capacity is rounded up to a power of two.
+     */
+    public SensorRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mTimestamps = new long[size];
+        mX = new float[size];
+        mY = new float[size];
+    }
+
+    /*
+     * Producer side.
+     *
+     * @return false if the buffer was full and the sample was dropped
+     */
+    public boolean offer(long timestampNanos, float x, float y) {
+        final long head = mHead.get();
+        if (head - mCachedTail > mMask) {
+            mCachedTail = mTail.get();
+            if (head - mCachedTail > mMask) {
+                mDropped.incrementAndGet();
+                return false;
+            }
+        }
+        final int slot = (int) head & mMask;
+        mTimestamps[slot] = timestampNanos;
+        mX[slot] = x;
+        mY[slot] = y;
+        // publishes the slot to the consumer
+        mHead.lazySet(head + 1);
+        return true;
+    }
+
+    /*
+     * Consumer side, hands every queued sample to the consumer in order.
+     *
+     * @return the number of samples drained
+     */
+    public int drain(Consumer consumer) {
+        final long tail = mTail.get();
+        final long head = mHead.get();
+        for (long i = tail; i < head; i++) {
+            final int slot = (int) i & mMask;
+            consumer.onSample(mTimestamps[slot], mX[slot], mY[slot]);
+        }
+        // hands the slots back to the producer
+        mTail.lazySet(head);
+        return (int) (head - tail);
+    }
+
+    public int size() {
+        return (int) (mHead.get() - mTail.get());
+    }
+
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+}
@@ -0,0 +1,125 @@
+package com.core.input;
+
+import com.core.physics.SimulationLoop;
+
+/**
+ * Tilt input for the {@link SimulationLoop}, fed from the sensor thread
+ * through a {@link SensorRingBuffer}.
+ *
+ * Every time the simulation reads the tilt it consumes all samples that
+ * arrived since the last read, optionally smoothing them with an exponential
+ * low-pass filter, so no sample is lost or read half-written however the two
+ * threads interleave.
+ *
+ * Samples must be timestamped on the System.nanoTime() clock. A sample is
+ * already old when the simulation reads it, and the frame computed from it
+ * is shown later still, so with extrapolation on the tilt is carried forward
+ * along the slope of the last two samples to the time the frame is expected
+ * on screen, see {@link #setExtrapolation}.
+ */
+public class TiltInput implements SimulationLoop.InputSource, SensorRingBuffer.Consumer {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    // never extrapolate further than this past the newest sample
+    private static final long MAX_EXTRAPOLATION_NANOS = 50000000L;
+
+    private final SensorRingBuffer mBuffer;
+
+    // only touched by the consumer
+    private float mLowPass = 1.0f;
+    private float mX;
+    private float mY;
+    private long mTimestamp;
+    private boolean mHasSample;
+    // the filtered tilt one sample earlier, for the slope
+    private float mPrevX;
+    private float mPrevY;
+    private long mPrevTimestamp;
+    private boolean mHasSlope;
+    private boolean mExtrapolate;
+    private long mPresentationDelay;
+
+    public TiltInput() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TiltInput(int capacity) {
+        mBuffer = new SensorRingBuffer(capacity);
+    }
+
+    /*
+     * Producer side, called for every sensor event with the already remapped
+     * tilt.
+     */
+    public boolean offer(long timestampNanos, float x, float y) {
+        return mBuffer.offer(timestampNanos, x, y);
+    }
+
+    /*
+     * Smoothing factor of the low-pass filter in (0, 1], 1 uses every sample
+     * as is. Set it before the simulation starts.
+     */
+    public void setLowPass(float lowPass) {
+        if (lowPass <= 0 || lowPass > 1) {
+            throw new IllegalArgumentException("lowPass must be in (0, 1]: " + lowPass);
+        }
+        mLowPass = lowPass;
+    }
+
+    /*
+     * Extrapolates the tilt to presentationDelayNanos after the time it is
+     * read, which should be how long a computed frame takes to reach the
+     * screen. It never goes further than twice the gap between the last two
+     * samples or MAX_EXTRAPOLATION_NANOS past the newest one, so a noisy or
+     * stalled sensor can't throw the tilt far off. Set it before the
+     * simulation starts or on the simulation thread, e.g. whenever the step
+     * length changes.
+     */
+    public void setExtrapolation(boolean extrapolate, long presentationDelayNanos) {
+        if (presentationDelayNanos < 0) {
+            throw new IllegalArgumentException("presentationDelayNanos must not be negative: "
+                    + presentationDelayNanos);
+        }
+        mExtrapolate = extrapolate;
+        mPresentationDelay = presentationDelayNanos;
+    }
+
+    @Override
+    public long readTilt(long nowNanos, float[] tilt) {
+        mBuffer.drain(this);
+        tilt[0] = mX;
+        tilt[1] = mY;
+        if (mExtrapolate && mHasSlope) {
+            final long span = mTimestamp - mPrevTimestamp;
+            final long ahead = Math.min(nowNanos + mPresentationDelay - mTimestamp,
+                    Math.min(span * 2, MAX_EXTRAPOLATION_NANOS));
+            if (span > 0 && ahead > 0) {
+                final float f = (float) ahead / span;
+                tilt[0] += (mX - mPrevX) * f;
+                tilt[1] += (mY - mPrevY) * f;
+            }
+        }
+        return mTimestamp;
+    }
+
+    @Override
+    public void onSample(long timestampNanos, float x, float y) {
+        mPrevX = mX;
+        mPrevY = mY;
+        mPrevTimestamp = mTimestamp;
+        mHasSlope = mHasSample;
+        if (mHasSample) {
+            mX += (x - mX) * mLowPass;
+            mY += (y - mY) * mLowPass;
+        } else {
+            mX = x;
+            mY = y;
+            mHasSample = true;
+        }
+        mTimestamp = timestampNanos;
+    }
+
+    public SensorRingBuffer getBuffer() {
+        return mBuffer;
+    }
+}
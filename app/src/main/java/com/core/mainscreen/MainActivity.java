@@ -9,6 +9,9 @@ import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.TextView;
 
+import com.core.database.Leaderboard;
+import com.core.database.LeaderboardCache;
+import com.core.score.Score;
 import com.example.android.accelerometerplay.AccelerometerPlayActivity;
 import com.facebook.AccessToken;
 import com.facebook.AccessTokenTracker;
@@ -25,6 +28,8 @@ import com.facebook.login.LoginManager;
 import com.facebook.login.LoginResult;
 import com.facebook.login.widget.LoginButton;
 
+import java.util.List;
+
 // https://developers.facebook.com/docs/facebook-login/android
 // https://developers.facebook.com/docs/facebook-login/android/accesstokens
 public class MainActivity extends AppCompatActivity {
@@ -35,6 +40,8 @@ public class MainActivity extends AppCompatActivity {
     private Profile profile;
 
     private TextView txtProfile;
+    private TextView txtLeaderboard;
+    private Leaderboard leaderboard;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -44,6 +51,9 @@ public class MainActivity extends AppCompatActivity {
         txtProfile = (TextView)findViewById(R.id.profile);
         txtProfile.setText("Hello World");
 
+        txtLeaderboard = (TextView)findViewById(R.id.leaderboard);
+        leaderboard = Leaderboard.get(this);
+
         FacebookSdk.sdkInitialize(getApplicationContext());
 
         callbackManager = CallbackManager.Factory.create();
@@ -51,6 +61,49 @@ public class MainActivity extends AppCompatActivity {
         loginWithFB();
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showLeaderboard();
+
+        // again once the scores of the last game are written, or the top
+        // list is loaded on the first start
+        leaderboard.getWriteQueue().execute(new Runnable() {
+            @Override
+            public void run() {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showLeaderboard();
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+     * Only reads the cache, never the database.
+     */
+    private void showLeaderboard() {
+        LeaderboardCache cache = leaderboard.getCache();
+        if (!cache.isLoaded()) {
+            txtLeaderboard.setText("Loading scores...");
+            return;
+        }
+        List<Score> top = cache.getTop();
+        if (top.isEmpty()) {
+            txtLeaderboard.setText("No scores yet");
+            return;
+        }
+        StringBuilder text = new StringBuilder("Best scores");
+        for (int i = 0; i < top.size(); i++) {
+            Score score = top.get(i);
+            text.append('\n').append(i + 1).append(". Player ").append(score.getUserId())
+                    .append(": ").append(score.getValue());
+        }
+        txtLeaderboard.setText(text);
+    }
+
     public void loadGame(View view) {
         Intent intent = new Intent(this, AccelerometerPlayActivity.class);
 
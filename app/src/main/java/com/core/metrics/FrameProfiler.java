@@ -0,0 +1,149 @@
+package com.core.metrics;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Per-phase timings of the game loop.
+ *
+ * Each phase is timed with {@link #begin} and {@link #end} into its own
+ * {@link LatencyHistogram}, in nanoseconds. Phases may nest (a step contains
+ * its integration, solver and capture phases) and may be timed on different
+ * threads, as long as any one phase is only ever timed on one thread. The
+ * number of solver iterations per step goes into a histogram of its own, and
+ * so does the input latency, from a sensor sample to drawing the first frame
+ * based on it.
+ *
+ * Nothing in here allocates once constructed, so it can stay switched on in
+ * a release build while hunting jank.
+ */
+public class FrameProfiler {
+    // a whole simulation step, including all the phases below
+    public static final int PHASE_STEP = 0;
+    // moving the balls
+    public static final int PHASE_INTEGRATE = 1;
+    // the collision iterations
+    public static final int PHASE_SOLVE = 2;
+    // moving the cups and finding the balls they swallow, includes PHASE_SCORE
+    public static final int PHASE_CAPTURE = 3;
+    // saving scores
+    public static final int PHASE_SCORE = 4;
+    // publishing the frame for drawing
+    public static final int PHASE_PUBLISH = 5;
+    // drawing the frame and moving the views, on the UI thread
+    public static final int PHASE_DRAW = 6;
+    public static final int PHASE_COUNT = 7;
+
+    private static final String[] PHASE_NAMES = {
+            "step", "integrate", "solve", "capture", "score", "publish", "draw"
+    };
+
+    private final LatencyHistogram[] mPhases = new LatencyHistogram[PHASE_COUNT];
+    private final long[] mStartNanos = new long[PHASE_COUNT];
+    private final LatencyHistogram mIterations = new LatencyHistogram();
+    private final LatencyHistogram mInputLatency = new LatencyHistogram();
+
+    public FrameProfiler() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i] = new LatencyHistogram();
+        }
+    }
+
+    public void begin(int phase) {
+        mStartNanos[phase] = System.nanoTime();
+    }
+
+    public void end(int phase) {
+        mPhases[phase].record(System.nanoTime() - mStartNanos[phase]);
+    }
+
+    public void recordIterations(int iterations) {
+        mIterations.record(iterations);
+    }
+
+    /*
+     * Nanoseconds from a sensor sample until a frame based on it was drawn.
+     * That is still a vsync or so before the frame is actually on screen.
+     */
+    public void recordInputLatency(long nanos) {
+        mInputLatency.record(nanos);
+    }
+
+    public LatencyHistogram getInputLatency() {
+        return mInputLatency;
+    }
+
+    public LatencyHistogram getPhase(int phase) {
+        return mPhases[phase];
+    }
+
+    public LatencyHistogram getIterations() {
+        return mIterations;
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /*
+     * Forgets everything recorded so far. Only call it while nothing is
+     * being timed, e.g. with the simulation stopped.
+     */
+    public void reset() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i].reset();
+        }
+        mIterations.reset();
+        mInputLatency.reset();
+    }
+
+    /*
+     * Appends one line of the form "solve 120/180/310/900us" (p50, p95,
+     * p99 and max) without allocating, for an on-screen overlay.
+     */
+    public void appendSummary(int phase, StringBuilder out) {
+        final LatencyHistogram histogram = mPhases[phase];
+        out.append(PHASE_NAMES[phase]).append(' ')
+                .append(histogram.getPercentile(0.50) / 1000).append('/')
+                .append(histogram.getPercentile(0.95) / 1000).append('/')
+                .append(histogram.getPercentile(0.99) / 1000).append('/')
+                .append(histogram.getMax() / 1000).append("us");
+    }
+
+    /*
+     * Writes a table of all phases in microseconds, plus the solver
+     * iterations, for offline analysis.
+     */
+    public void dump(Writer writer) {
+        final PrintWriter out = new PrintWriter(writer);
+        out.println("phase\tcount\tmean_us\tp50_us\tp95_us\tp99_us\tmax_us");
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            final LatencyHistogram histogram = mPhases[i];
+            out.println(PHASE_NAMES[i] + '\t' + histogram.getCount()
+                    + '\t' + micros(histogram.getMean())
+                    + '\t' + micros(histogram.getPercentile(0.50))
+                    + '\t' + micros(histogram.getPercentile(0.95))
+                    + '\t' + micros(histogram.getPercentile(0.99))
+                    + '\t' + micros(histogram.getMax()));
+        }
+        out.println("input\t" + mInputLatency.getCount()
+                + '\t' + micros(mInputLatency.getMean())
+                + '\t' + micros(mInputLatency.getPercentile(0.50))
+                + '\t' + micros(mInputLatency.getPercentile(0.95))
+                + '\t' + micros(mInputLatency.getPercentile(0.99))
+                + '\t' + micros(mInputLatency.getMax()));
+        out.println();
+        out.println("solver\tcount\tmean\tp50\tp95\tp99\tmax");
+        out.println("iterations\t" + mIterations.getCount()
+                + '\t' + mIterations.getMean()
+                + '\t' + mIterations.getPercentile(0.50)
+                + '\t' + mIterations.getPercentile(0.95)
+                + '\t' + mIterations.getPercentile(0.99)
+                + '\t' + mIterations.getMax());
+        out.flush();
+    }
+
+    private static String micros(long nanos) {
+        return String.valueOf(nanos / 1000.0);
+    }
+}
@@ -0,0 +1,103 @@
+package com.core.metrics;
+
+/**
+ * Fixed-bucket histogram of non-negative long values, usually nanoseconds.
+ *
+ * Buckets are log-linear: every power of two is split into eight equal
+ * buckets, so a percentile is never off by more than about 12% while the
+ * whole range of a long fits in a few hundred counters. Recording is a couple
+ * of shifts and an increment and never allocates.
+ *
+ * A histogram has a single writer. Reads from another thread, e.g. an
+ * overlay on the UI thread, see a slightly stale view, which is good enough
+ * for display; read it from the writer thread for exact numbers.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final int[] mCounts = new int[BUCKETS];
+    private int mCount;
+    private long mMax;
+    private long mSum;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts[bucketOf(value)]++;
+        mCount++;
+        mSum += value;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mMax = 0;
+        mSum = 0;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * Returns the value below which the given fraction of the samples fall.
+     *
+     * @param fraction in [0, 1], e.g. 0.99 for the 99th percentile
+     * @return the upper end of the bucket holding that sample, never more
+     * than the largest value recorded, or 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+        final int count = mCount;
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    /*
+     * Values below SUB_BUCKETS get a bucket each, above that every power of
+     * two [2^e, 2^(e+1)) is split into SUB_BUCKETS buckets.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long width = 1L << (exponent - SUB_BITS);
+        final long lower = (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,50 @@
+package com.core.physics;
+
+/**
+ * Small seeded random number generator (SplitMix64).
+ *
+ * Unlike {@link Math#random()} it is not shared or synchronized, and the same
+ * seed always produces the same sequence, which is what makes a recorded
+ * session replayable. Not thread-safe; give each thread its own instance.
+ */
+public class FastRandom {
+    private final long mSeed;
+    private long mState;
+
+    public FastRandom(long seed) {
+        mSeed = seed;
+        mState = seed;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public long nextLong() {
+        long z = (mState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /*
+     * Uniform in [0, bound).
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /*
+     * Uniform in [0, 1).
+     */
+    public float nextFloat() {
+        return (nextLong() >>> 40) * (1.0f / (1 << 24));
+    }
+}
@@ -0,0 +1,145 @@
+package com.core.physics;
+
+/**
+ * Fixed-timestep accumulator for the simulation.
+ *
+ * Every frame the caller hands in a monotonic timestamp in nanoseconds (for
+ * example {@link System#nanoTime()}) and gets back how many physics steps of
+ * exactly {@link #getStepSeconds()} to run. Whatever is left over is exposed
+ * as an interpolation factor, so the renderer can blend between the last two
+ * physics states instead of showing the simulation stuttering at its own
+ * rate.
+ *
+ * A stalled frame never turns into one huge step. At most
+ * {@code maxStepsPerFrame} steps are handed out per frame and any time beyond
+ * that is dropped, so a slow device does not fall further and further behind
+ * (the "spiral of death").
+ */
+public class FixedStepClock {
+    public static final int DEFAULT_STEP_HZ = 60;
+    public static final int DEFAULT_MAX_STEPS_PER_FRAME = 4;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private int mStepHz;
+    private long mStepNanos;
+    private float mStepSeconds;
+    private int mMaxStepsPerFrame;
+
+    private long mLastNanos;
+    private boolean mStarted;
+    private long mAccumulator;
+    private long mDroppedNanos;
+
+    public FixedStepClock() {
+        this(DEFAULT_STEP_HZ, DEFAULT_MAX_STEPS_PER_FRAME);
+    }
+
+    public FixedStepClock(int stepHz, int maxStepsPerFrame) {
+        setStepHz(stepHz);
+        setMaxStepsPerFrame(maxStepsPerFrame);
+    }
+
+    public void setStepHz(int stepHz) {
+        if (stepHz <= 0) {
+            throw new IllegalArgumentException("stepHz must be positive: " + stepHz);
+        }
+        mStepHz = stepHz;
+        mStepNanos = NANOS_PER_SECOND / stepHz;
+        mStepSeconds = (float) mStepNanos / NANOS_PER_SECOND;
+        if (mAccumulator > mStepNanos) {
+            mAccumulator = mStepNanos;
+        }
+    }
+
+    public void setMaxStepsPerFrame(int maxStepsPerFrame) {
+        if (maxStepsPerFrame <= 0) {
+            throw new IllegalArgumentException("maxStepsPerFrame must be positive: "
+                    + maxStepsPerFrame);
+        }
+        mMaxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * Advances the clock to the given time.
+     *
+     * @param nowNanos monotonic time in nanoseconds
+     * @return the number of fixed steps the simulation should run this frame
+     */
+    public int advance(long nowNanos) {
+        if (!mStarted) {
+            mStarted = true;
+            mLastNanos = nowNanos;
+            return 0;
+        }
+
+        long elapsed = nowNanos - mLastNanos;
+        mLastNanos = nowNanos;
+        if (elapsed < 0) {
+            elapsed = 0;
+        }
+        mAccumulator += elapsed;
+
+        int steps = (int) Math.min(mAccumulator / mStepNanos, mMaxStepsPerFrame);
+        mAccumulator -= steps * mStepNanos;
+
+        // spiral-of-death guard, forget the time we could not catch up on
+        if (mAccumulator >= mStepNanos) {
+            final long keep = mAccumulator % mStepNanos;
+            mDroppedNanos += mAccumulator - keep;
+            mAccumulator = keep;
+        }
+        return steps;
+    }
+
+    /*
+     * Forgets the last timestamp, e.g. when the simulation is paused, so the
+     * pause itself is not simulated on resume.
+     */
+    public void reset() {
+        mStarted = false;
+        mAccumulator = 0;
+    }
+
+    /*
+     * How far the current time is between the last step and the next one,
+     * in [0, 1).
+     */
+    public float getAlpha() {
+        return (float) mAccumulator / mStepNanos;
+    }
+
+    /*
+     * Time already accumulated towards the next step.
+     */
+    public long getAccumulatedNanos() {
+        return mAccumulator;
+    }
+
+    public long getNanosUntilNextStep() {
+        return mStepNanos - mAccumulator;
+    }
+
+    public int getStepHz() {
+        return mStepHz;
+    }
+
+    public float getStepSeconds() {
+        return mStepSeconds;
+    }
+
+    public long getStepNanos() {
+        return mStepNanos;
+    }
+
+    public int getMaxStepsPerFrame() {
+        return mMaxStepsPerFrame;
+    }
+
+    /*
+     * Total simulated time thrown away by the spiral-of-death guard.
+     */
+    public long getDroppedNanos() {
+        return mDroppedNanos;
+    }
+}
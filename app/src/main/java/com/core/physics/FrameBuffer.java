@@ -0,0 +1,69 @@
+package com.core.physics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple buffer of {@link FrameSnapshot}s between the simulation thread and
+ * the UI thread.
+ *
+ * The writer always fills its own back snapshot and publishes it by swapping
+ * it with the middle one in a single atomic operation. The reader swaps the
+ * middle one with its front snapshot only if something new was published.
+ * Neither side ever waits for the other or sees a snapshot being written,
+ * and once the snapshots are big enough nothing is allocated or copied
+ * beyond the one capture per published frame.
+ *
+ * There must be a single writer thread and a single reader thread.
+ */
+public class FrameBuffer {
+    // set in mMiddle when the middle snapshot was published and not read yet
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final FrameSnapshot[] mFrames = new FrameSnapshot[3];
+    // index of the middle snapshot, plus FRESH
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+
+    // only touched by the writer
+    private int mBack = 0;
+
+    // only touched by the reader
+    private int mFront = 2;
+    private boolean mHasFrame;
+
+    /*
+     * Sizes the snapshots for up to capacity balls and cupCount cups, so
+     * publishing doesn't allocate.
+     */
+    public FrameBuffer(int capacity, int cupCount) {
+        for (int i = 0; i < mFrames.length; i++) {
+            mFrames[i] = new FrameSnapshot(capacity, cupCount);
+        }
+    }
+
+    /**
+     * Copies the current state of the engine and makes it the latest frame.
+     * Writer thread only.
+     *
+     * @param timeNanos the monotonic time the last step corresponds to
+     * @param stepNanos the length of one physics step
+     * @param inputNanos timestamp of the newest sensor sample the frame used
+     */
+    public void publish(ParticleEngine engine, KinematicBody[] cups,
+                        long timeNanos, long stepNanos, long inputNanos) {
+        mFrames[mBack].capture(engine, cups, timeNanos, stepNanos, inputNanos);
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /*
+     * The latest published frame, or null if nothing was published yet.
+     * Reader thread only. The snapshot stays valid until the next call.
+     */
+    public FrameSnapshot acquire() {
+        if ((mMiddle.get() & FRESH) != 0) {
+            mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+            mHasFrame = true;
+        }
+        return mHasFrame ? mFrames[mFront] : null;
+    }
+}
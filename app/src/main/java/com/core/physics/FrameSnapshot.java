@@ -0,0 +1,110 @@
+package com.core.physics;
+
+/**
+ * One simulated frame as the UI thread sees it.
+ *
+ * It holds the ball positions after the last physics step and before it, so
+ * the renderer can interpolate between the two based on how much time has
+ * passed since the step, plus the position of the center of every cup.
+ *
+ * Snapshots belong to a {@link FrameBuffer}, which reuses them: a snapshot
+ * returned by {@link FrameBuffer#acquire()} stays untouched until the reader
+ * acquires the next one, and must not be used after that.
+ */
+public final class FrameSnapshot {
+    private int mCount;
+    private float[] mPosX;
+    private float[] mPosY;
+    private float[] mPrevX;
+    private float[] mPrevY;
+    private int mCupCount;
+    private float[] mCupX;
+    private float[] mCupY;
+    private long mTimeNanos;
+    private long mStepNanos;
+    private long mInputNanos;
+
+    FrameSnapshot(int capacity, int cupCapacity) {
+        mPosX = new float[capacity];
+        mPosY = new float[capacity];
+        mPrevX = new float[capacity];
+        mPrevY = new float[capacity];
+        mCupX = new float[cupCapacity];
+        mCupY = new float[cupCapacity];
+    }
+
+    /*
+     * Copies the current state of the engine, only growing the arrays if
+     * there are more balls than ever before.
+     */
+    void capture(ParticleEngine engine, KinematicBody[] cups, long timeNanos, long stepNanos,
+                 long inputNanos) {
+        final int count = engine.getParticleCount();
+        if (mPosX.length < count) {
+            final int capacity = Math.max(count, mPosX.length * 2);
+            mPosX = new float[capacity];
+            mPosY = new float[capacity];
+            mPrevX = new float[capacity];
+            mPrevY = new float[capacity];
+        }
+        if (mCupX.length < cups.length) {
+            mCupX = new float[cups.length];
+            mCupY = new float[cups.length];
+        }
+
+        mCount = count;
+        engine.copyPositions(mPosX, mPosY, mPrevX, mPrevY);
+        mCupCount = cups.length;
+        for (int i = 0; i < cups.length; i++) {
+            mCupX[i] = cups[i].getPosX();
+            mCupY[i] = cups[i].getPosY();
+        }
+        mTimeNanos = timeNanos;
+        mStepNanos = stepNanos;
+        mInputNanos = inputNanos;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /*
+     * Interpolation factor in [0, 1] for drawing this frame at nowNanos.
+     */
+    public float getAlpha(long nowNanos) {
+        final float alpha = (float) (nowNanos - mTimeNanos) / mStepNanos;
+        return alpha < 0 ? 0 : (alpha > 1 ? 1 : alpha);
+    }
+
+    public float getInterpolatedPosX(int i, float alpha) {
+        return mPrevX[i] + (mPosX[i] - mPrevX[i]) * alpha;
+    }
+
+    public float getInterpolatedPosY(int i, float alpha) {
+        return mPrevY[i] + (mPosY[i] - mPrevY[i]) * alpha;
+    }
+
+    public int getCupCount() {
+        return mCupCount;
+    }
+
+    public float getCupX(int i) {
+        return mCupX[i];
+    }
+
+    public float getCupY(int i) {
+        return mCupY[i];
+    }
+
+    public long getTimeNanos() {
+        return mTimeNanos;
+    }
+
+    /*
+     * Timestamp of the newest sensor sample this frame is based on, 0
+     * before the first one arrived.
+     */
+    public long getInputNanos() {
+        return mInputNanos;
+    }
+}
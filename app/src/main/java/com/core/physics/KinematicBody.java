@@ -0,0 +1,108 @@
+package com.core.physics;
+
+/**
+ * An axis-aligned box that moves on its own schedule instead of reacting to
+ * the tilt, like the duck cup.
+ *
+ * Position is the center of the box and, like everything in the simulation,
+ * in meters with y pointing up. If a {@link WaypointPath} is attached, every
+ * {@link #computePhysics} first steers the body along it.
+ */
+public class KinematicBody {
+    private float mPosX;
+    private float mPosY;
+    private float mVelX;
+    private float mVelY;
+    // where the last computePhysics() started
+    private float mPrevX;
+    private float mPrevY;
+    private final float mHalfWidth;
+    private final float mHalfHeight;
+    private WaypointPath mPath;
+
+    public KinematicBody(float width, float height) {
+        mHalfWidth = width * 0.5f;
+        mHalfHeight = height * 0.5f;
+    }
+
+    public void setPath(WaypointPath path) {
+        mPath = path;
+        if (path != null) {
+            path.reset();
+            mPosX = mPrevX = path.getX(0);
+            mPosY = mPrevY = path.getY(0);
+        }
+    }
+
+    public WaypointPath getPath() {
+        return mPath;
+    }
+
+    /*
+     * Moves the body by dT seconds at its current velocity.
+     */
+    public void computePhysics(float dT) {
+        if (mPath != null) {
+            mPath.steer(this, dT);
+        }
+        mPrevX = mPosX;
+        mPrevY = mPosY;
+        mPosX += mVelX * dT;
+        mPosY += mVelY * dT;
+    }
+
+    /*
+     * Moves the body seconds ahead in steps of at most dT, e.g. to start it
+     * part of the way along its path.
+     */
+    public void advance(float seconds, float dT) {
+        for (float t = 0; t < seconds; t += dT) {
+            computePhysics(Math.min(dT, seconds - t));
+        }
+    }
+
+    public void setPosition(float x, float y) {
+        mPosX = mPrevX = x;
+        mPosY = mPrevY = y;
+    }
+
+    public void setVelocity(float vx, float vy) {
+        mVelX = vx;
+        mVelY = vy;
+    }
+
+    public float getPosX() {
+        return mPosX;
+    }
+
+    public float getPosY() {
+        return mPosY;
+    }
+
+    /*
+     * Position before the last computePhysics(), for swept tests.
+     */
+    public float getPrevPosX() {
+        return mPrevX;
+    }
+
+    public float getPrevPosY() {
+        return mPrevY;
+    }
+
+    public float getVelX() {
+        return mVelX;
+    }
+
+    public float getVelY() {
+        return mVelY;
+    }
+
+    public float getHalfWidth() {
+        return mHalfWidth;
+    }
+
+    public float getHalfHeight() {
+        return mHalfHeight;
+    }
+}
@@ -0,0 +1,283 @@
+package com.core.physics;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs the collision passes of a {@link ParticleEngine} on several cores.
+ *
+ * The grid cells are split into nine colours by (x mod 3, y mod 3). A cell
+ * resolves the pairs inside itself and with its right, lower-left, lower and
+ * lower-right neighbours, so everything it writes stays within a 3 x 2 block
+ * of cells. Two cells of the same colour are at least three cells apart, so
+ * their blocks never overlap and all cells of one colour can be solved at
+ * the same time without locks. Colours run one after the other.
+ *
+ * Each cell is always handled by the same worker in a fixed order and the
+ * collision entropy is a hash of the pair, so the result is the same for a
+ * given input order no matter how many workers there are or how they are
+ * scheduled. With one worker everything runs on the calling thread, which
+ * makes that the serial reference for the others. The pair order differs
+ * from the engine's own solver, so an engine without a ParallelSolver ends
+ * up in a different, equally valid state.
+ *
+ * The workers are plain threads that meet at a barrier between colours,
+ * which is available on every API level, unlike ForkJoinPool. The calling
+ * thread is worker 0, the others are started by the constructor and run
+ * until {@link #shutdown()}. A solve does not allocate.
+ */
+public class ParallelSolver {
+    // below this many particles the single-threaded solver is faster
+    public static final int DEFAULT_MIN_PARTICLES = 2000;
+
+    private static final int NUM_COLOURS = 9;
+
+    private final Batch[] mBatches;
+    private final Thread[] mThreads;
+    // every worker waits here before a solve and after each colour
+    private final CyclicBarrier mBarrier;
+    private volatile boolean mShutdown;
+    private int mMinParticles = DEFAULT_MIN_PARTICLES;
+
+    // state of the solve in progress, handed to the workers by the barrier
+    private ParticleEngine mEngine;
+    private SpatialGrid mGrid;
+    private int mPass;
+    private float mPenetration;
+    private int mContacts;
+
+    public ParallelSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelSolver(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("workers must be positive: " + workers);
+        }
+        mBatches = new Batch[workers];
+        for (int w = 0; w < workers; w++) {
+            mBatches[w] = new Batch(w);
+        }
+        mBarrier = new CyclicBarrier(workers);
+        mThreads = new Thread[workers - 1];
+        for (int w = 1; w < workers; w++) {
+            final Batch batch = mBatches[w];
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(batch);
+                }
+            }, "solver-" + w);
+            // a solver that was never shut down doesn't keep the process alive
+            thread.setDaemon(true);
+            thread.start();
+            mThreads[w - 1] = thread;
+        }
+    }
+
+    public void setMinParticles(int minParticles) {
+        mMinParticles = minParticles;
+    }
+
+    public int getMinParticles() {
+        return mMinParticles;
+    }
+
+    public int getWorkers() {
+        return mBatches.length;
+    }
+
+    /*
+     * Runs one collision pass over the grid, which must have been rebuilt
+     * from the engine's current positions. The penetration the pass found is
+     * left in getPenetration().
+     *
+     * @return true if any pair was colliding
+     */
+    boolean solve(ParticleEngine engine, SpatialGrid grid, int pass) {
+        if (mShutdown) {
+            throw new IllegalStateException("ParallelSolver is shut down");
+        }
+        mEngine = engine;
+        mGrid = grid;
+        mPass = pass;
+        try {
+            // lets the workers go
+            mBarrier.await();
+            runPhases(mBatches[0]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdown();
+            throw new IllegalStateException("Interrupted while solving", e);
+        } catch (BrokenBarrierException e) {
+            shutdown();
+            throw new IllegalStateException("A solver worker stopped", e);
+        } finally {
+            mEngine = null;
+            mGrid = null;
+        }
+
+        boolean more = false;
+        float penetration = 0;
+        int contacts = 0;
+        for (Batch batch : mBatches) {
+            more |= batch.mMore;
+            penetration += batch.mPenetration;
+            contacts += batch.mContacts;
+        }
+        mPenetration = penetration;
+        mContacts = contacts;
+        return more;
+    }
+
+    /*
+     * Total overlap of the colliding pairs found by the last solve(), in
+     * meters, and how many pairs there were.
+     */
+    float getPenetration() {
+        return mPenetration;
+    }
+
+    int getContacts() {
+        return mContacts;
+    }
+
+    /*
+     * Stops the worker threads. The solver can't be used afterwards.
+     */
+    public void shutdown() {
+        mShutdown = true;
+        for (Thread thread : mThreads) {
+            thread.interrupt();
+        }
+    }
+
+    /*
+     * Loop of the worker threads, one solve per round.
+     */
+    private void work(Batch batch) {
+        try {
+            while (true) {
+                mBarrier.await();
+                if (mShutdown) {
+                    return;
+                }
+                runPhases(batch);
+            }
+        } catch (InterruptedException e) {
+            // shut down
+        } catch (BrokenBarrierException e) {
+            // another worker was interrupted, the solver is shut down
+        }
+    }
+
+    /*
+     * One worker's share of a pass. No worker starts a colour before all of
+     * them finished the one before.
+     */
+    private void runPhases(Batch batch) throws InterruptedException, BrokenBarrierException {
+        batch.mMore = false;
+        batch.mPenetration = 0;
+        batch.mContacts = 0;
+        for (int colour = 0; colour < NUM_COLOURS; colour++) {
+            batch.solveColour(colour);
+            mBarrier.await();
+        }
+        batch.resolveBounds();
+        mBarrier.await();
+    }
+
+    private class Batch {
+        private final int mWorker;
+        private boolean mMore;
+        private float mPenetration;
+        private int mContacts;
+
+        Batch(int worker) {
+            mWorker = worker;
+        }
+
+        /*
+         * Handles every workers-th cell of the colour.
+         */
+        private void solveColour(int colour) {
+            final SpatialGrid grid = mGrid;
+            final int columns = grid.getColumns();
+            final int rows = grid.getRows();
+            final int workers = mBatches.length;
+
+            int k = 0;
+            for (int cy = colour / 3; cy < rows; cy += 3) {
+                for (int cx = colour % 3; cx < columns; cx += 3) {
+                    if (k++ % workers == mWorker) {
+                        solveCell(cx, cy, columns, rows);
+                    }
+                }
+            }
+        }
+
+        private void solveCell(int cx, int cy, int columns, int rows) {
+            final ParticleEngine engine = mEngine;
+            final int[] cellStart = mGrid.getCellStart();
+            final int[] sorted = mGrid.getSortedIndices();
+            final int pass = mPass;
+            final int c = cy * columns + cx;
+            final int start = cellStart[c];
+            final int end = cellStart[c + 1];
+
+            for (int s = start; s < end; s++) {
+                final int i = sorted[s];
+
+                // pairs inside the cell
+                for (int t = s + 1; t < end; t++) {
+                    resolve(engine, i, sorted[t], pass);
+                }
+
+                // pairs with the forward neighbours
+                if (cx + 1 < columns) {
+                    solveAgainst(engine, i, c + 1, cellStart, sorted, pass);
+                }
+                if (cy + 1 < rows) {
+                    final int below = c + columns;
+                    if (cx > 0) {
+                        solveAgainst(engine, i, below - 1, cellStart, sorted, pass);
+                    }
+                    solveAgainst(engine, i, below, cellStart, sorted, pass);
+                    if (cx + 1 < columns) {
+                        solveAgainst(engine, i, below + 1, cellStart, sorted, pass);
+                    }
+                }
+            }
+        }
+
+        private void solveAgainst(ParticleEngine engine, int i, int cell, int[] cellStart,
+                                  int[] sorted, int pass) {
+            for (int s = cellStart[cell], end = cellStart[cell + 1]; s < end; s++) {
+                resolve(engine, i, sorted[s], pass);
+            }
+        }
+
+        private void resolve(ParticleEngine engine, int i, int j, int pass) {
+            final float penetration = engine.resolvePair(i, j, pass);
+            if (penetration >= 0) {
+                mMore = true;
+                mPenetration += penetration;
+                mContacts++;
+            }
+        }
+
+        /*
+         * Each worker clamps its own slice of the particles to the table.
+         */
+        private void resolveBounds() {
+            final ParticleEngine engine = mEngine;
+            final int count = mGrid.getCount();
+            final int workers = mBatches.length;
+            final int from = (int) ((long) count * mWorker / workers);
+            final int to = (int) ((long) count * (mWorker + 1) / workers);
+            for (int i = from; i < to; i++) {
+                engine.resolveCollisionWithBounds(i);
+            }
+        }
+    }
+}
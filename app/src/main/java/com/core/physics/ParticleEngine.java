@@ -0,0 +1,1494 @@
+package com.core.physics;
+
+import com.core.metrics.FrameProfiler;
+
+/**
+ * Headless particle engine for the accelerometer simulation.
+ *
+ * Particle state is stored as a structure-of-arrays: positions and velocities
+ * live in parallel primitive arrays indexed by particle, so the solver walks
+ * contiguous memory instead of chasing one heap object per ball. Nothing in
+ * here depends on Android; the view layer only reads positions back out.
+ *
+ * All units are meters and seconds, with the origin in the center of the
+ * table. The positions before the last {@link #update} are kept as well, so a
+ * renderer can interpolate between the last two steps.
+ *
+ * The arrays double as a particle pool: live particles are packed at the
+ * front, spawning takes the next free slot and removal moves the last
+ * particle into the hole, both in O(1) and without allocating once the pool
+ * is big enough (see {@link #reserve}). Every particle also gets a stable id
+ * from a free-list, for callers that need to track a ball while indices move.
+ *
+ * With warm starting on, balls that have barely moved for a while are put
+ * to sleep, together with everything they touch: such a resting-contact
+ * island is neither integrated nor pair-tested until the tilt changes, an
+ * awake ball bumps into it or one of its balls is removed. Then the whole
+ * island wakes up at once, so a pile never collapses half asleep.
+ */
+public class ParticleEngine {
+    // We do no more than a limited number of iterations, see setMaxIterations()
+    public static final int NUM_MAX_ITERATIONS = 10;
+
+    // returned by resolvePair() for balls that don't touch
+    static final float NO_CONTACT = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // island label of a particle that is being simulated
+    private static final int AWAKE = -1;
+    // a ball that stays within this many diameters of where it started
+    // resting, a fifth of a millimeter, is still resting
+    private static final float REST_DRIFT = 0.05f;
+    // steps an island has to rest before it goes to sleep
+    private static final int SLEEP_STEPS = 30;
+    // steps between searches for resting islands
+    private static final int SLEEP_CHECK_INTERVAL = 8;
+    // tilt change, in m/s^2, that wakes every sleeping ball
+    private static final float WAKE_TILT = 0.25f;
+    // balls closer than this many diameters are in contact for islands
+    private static final float CONTACT_SLOP = 1.05f;
+    // a ball that moves more than this many diameters in a step is swept
+    private static final float SWEEP_THRESHOLD = 0.25f;
+
+    private final float mBallDiameter;
+    private final float mBallDiameter2;
+
+    private float[] mPosX;
+    private float[] mPosY;
+    private float[] mVelX;
+    private float[] mVelY;
+    private float[] mPrevX;
+    private float[] mPrevY;
+    private int mCount;
+
+    // index -> id, id -> index (-1 when the id is free) and the free-list of ids
+    private int[] mIds;
+    private int[] mIndexOf;
+    private int[] mFreeIds;
+    private int mFreeCount;
+    private int mNextId;
+
+    // particles marked by despawn(), removed by flushDespawns()
+    private boolean[] mDespawned;
+    private int mDespawnCount;
+    private int mFirstDespawn;
+
+    // island label per particle or AWAKE, how many steps it has rested and
+    // where it started resting
+    private int[] mIsland;
+    private int[] mRestSteps;
+    private float[] mRestX;
+    private float[] mRestY;
+    // sleeping particles an awake one bumped into, woken after the solve
+    private boolean[] mWake;
+    private boolean mWakePending;
+    private int mSleepingCount;
+    private int mNextIsland;
+    private int mSleepCheckCountdown = SLEEP_CHECK_INTERVAL;
+    // tilt when the first island fell asleep
+    private float mSleepTiltX;
+    private float mSleepTiltY;
+    private boolean mSleepingEnabled = true;
+    // positions before the solve, to see what the collisions did
+    private float[] mSolveX;
+    private float[] mSolveY;
+    // scratch for finding islands
+    private int[] mParent;
+    private int[] mMinRest;
+
+    private float mHorizontalBound;
+    private float mVerticalBound;
+
+    private final SpatialGrid mGrid;
+    // false once particles moved slots since the last rebuild
+    private boolean mGridValid;
+    private boolean mBroadphaseEnabled = true;
+    private ParallelSolver mParallelSolver;
+    private int mLastIterations;
+
+    // solver budget and convergence, see setMaxIterations() and
+    // setPenetrationTolerance()
+    private int mMaxIterations = NUM_MAX_ITERATIONS;
+    private float mPenetrationTolerance;
+    private float mPassPenetration;
+    private int mPassContacts;
+
+    // contacts of the last step by particle id, resolved first in the next
+    private boolean mWarmStarting;
+    private int[] mContactA = new int[DEFAULT_CAPACITY];
+    private int[] mContactB = new int[DEFAULT_CAPACITY];
+    private int mContactCount;
+    private boolean mRecordContacts;
+
+    // swept collisions, see setContinuousCollision()
+    private boolean mContinuousCollision;
+    // farthest any ball moved in the last update
+    private float mMaxStep;
+    private final SweptBoxFilter mSweptBoxFilter = new SweptBoxFilter();
+
+    // times the integration and solver phases when set
+    private FrameProfiler mProfiler;
+
+    // entropy for the serial solver
+    private final FastRandom mRandom;
+
+    public ParticleEngine(float ballDiameter) {
+        this(ballDiameter, DEFAULT_CAPACITY);
+    }
+
+    public ParticleEngine(float ballDiameter, int capacity) {
+        this(ballDiameter, capacity, new FastRandom(System.nanoTime()));
+    }
+
+    /*
+     * Two engines built with the same seed and fed the same input end up in
+     * the same state.
+     */
+    public ParticleEngine(float ballDiameter, int capacity, FastRandom random) {
+        mRandom = random;
+        mBallDiameter = ballDiameter;
+        mBallDiameter2 = ballDiameter * ballDiameter;
+        mGrid = new SpatialGrid(ballDiameter);
+
+        capacity = Math.max(1, capacity);
+        mPosX = new float[capacity];
+        mPosY = new float[capacity];
+        mVelX = new float[capacity];
+        mVelY = new float[capacity];
+        mPrevX = new float[capacity];
+        mPrevY = new float[capacity];
+        mIds = new int[capacity];
+        mIndexOf = new int[capacity];
+        mFreeIds = new int[capacity];
+        mDespawned = new boolean[capacity];
+        mIsland = new int[capacity];
+        mRestSteps = new int[capacity];
+        mRestX = new float[capacity];
+        mRestY = new float[capacity];
+        mWake = new boolean[capacity];
+        mSolveX = new float[capacity];
+        mSolveY = new float[capacity];
+        mParent = new int[capacity];
+        mMinRest = new int[capacity];
+    }
+
+    /*
+     * The table is the rectangle [-horizontalBound, horizontalBound] x
+     * [-verticalBound, verticalBound], already shrunk by the ball radius.
+     */
+    public void setBounds(float horizontalBound, float verticalBound) {
+        mHorizontalBound = horizontalBound;
+        mVerticalBound = verticalBound;
+        mGrid.setBounds(horizontalBound, verticalBound);
+        // the walls moved, nothing is resting anymore
+        wakeAll();
+        mGridValid = false;
+    }
+
+    public interface ParticleVisitor {
+        void visit(int index);
+    }
+
+    /**
+     * Visits every particle whose center lies inside the rectangle, using the
+     * broadphase grid so the cost depends on the size of the region rather
+     * than on the number of particles.
+     *
+     * Particles already marked by despawn() are visited too. The visitor may
+     * despawn and spawn particles; particles spawned during the query are not
+     * visited.
+     */
+    public void queryRegion(float minX, float minY, float maxX, float maxY,
+                            ParticleVisitor visitor) {
+        if (!mBroadphaseEnabled) {
+            final int count = mCount;
+            for (int i = 0; i < count; i++) {
+                if (inRegion(i, minX, minY, maxX, maxY)) {
+                    visitor.visit(i);
+                }
+            }
+            return;
+        }
+
+        final SpatialGrid grid = mGrid;
+        if (!mGridValid) {
+            grid.rebuild(mPosX, mPosY, mCount);
+            mGridValid = true;
+        }
+
+        final int columns = grid.getColumns();
+        final int x0 = grid.cellX(minX);
+        final int x1 = grid.cellX(maxX);
+        final int y0 = grid.cellY(minY);
+        final int y1 = grid.cellY(maxY);
+        final int[] cellStart = grid.getCellStart();
+        final int[] sorted = grid.getSortedIndices();
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                final int c = y * columns + x;
+                for (int s = cellStart[c], end = cellStart[c + 1]; s < end; s++) {
+                    final int i = sorted[s];
+                    if (inRegion(i, minX, minY, maxX, maxY)) {
+                        visitor.visit(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Visits every particle whose center is inside the body's box. With
+     * continuous collision on, also the ones whose center passed through the
+     * box during the last update, taking the body's own last move into
+     * account, so a fast ball can't jump over a cup.
+     */
+    public void queryBox(KinematicBody body, ParticleVisitor visitor) {
+        final float x = body.getPosX();
+        final float y = body.getPosY();
+        final float hw = body.getHalfWidth();
+        final float hh = body.getHalfHeight();
+        if (!mContinuousCollision) {
+            queryRegion(x - hw, y - hh, x + hw, y + hh, visitor);
+            return;
+        }
+
+        // no ball that ends up outside of this can have crossed the box
+        final float px = body.getPrevPosX();
+        final float py = body.getPrevPosY();
+        final float reach = mMaxStep;
+        final SweptBoxFilter filter = mSweptBoxFilter;
+        filter.mBody = body;
+        filter.mVisitor = visitor;
+        queryRegion(Math.min(x, px) - hw - reach, Math.min(y, py) - hh - reach,
+                Math.max(x, px) + hw + reach, Math.max(y, py) + hh + reach, filter);
+        filter.mBody = null;
+        filter.mVisitor = null;
+    }
+
+    /*
+     * Passes on the particles whose path relative to the body went through
+     * its box.
+     */
+    private class SweptBoxFilter implements ParticleVisitor {
+        private KinematicBody mBody;
+        private ParticleVisitor mVisitor;
+
+        @Override
+        public void visit(int index) {
+            final KinematicBody body = mBody;
+            if (segmentHitsBox(mPrevX[index] - body.getPrevPosX(),
+                    mPrevY[index] - body.getPrevPosY(),
+                    mPosX[index] - body.getPosX(), mPosY[index] - body.getPosY(),
+                    body.getHalfWidth(), body.getHalfHeight())) {
+                mVisitor.visit(index);
+            }
+        }
+    }
+
+    /*
+     * true if the segment from (x0, y0) to (x1, y1) runs through the inside
+     * of the box of half size hw x hh around the origin.
+     */
+    static boolean segmentHitsBox(float x0, float y0, float x1, float y1, float hw, float hh) {
+        float t0 = 0;
+        float t1 = 1;
+
+        final float dx = x1 - x0;
+        if (dx == 0) {
+            if (Math.abs(x0) >= hw) {
+                return false;
+            }
+        } else {
+            final float ta = (-hw - x0) / dx;
+            final float tb = (hw - x0) / dx;
+            t0 = Math.max(t0, Math.min(ta, tb));
+            t1 = Math.min(t1, Math.max(ta, tb));
+            if (t0 >= t1) {
+                return false;
+            }
+        }
+
+        final float dy = y1 - y0;
+        if (dy == 0) {
+            return Math.abs(y0) < hh;
+        }
+        final float ta = (-hh - y0) / dy;
+        final float tb = (hh - y0) / dy;
+        t0 = Math.max(t0, Math.min(ta, tb));
+        t1 = Math.min(t1, Math.max(ta, tb));
+        return t0 < t1;
+    }
+
+    private boolean inRegion(int i, float minX, float minY, float maxX, float maxY) {
+        final float x = mPosX[i];
+        final float y = mPosY[i];
+        return x > minX && x < maxX && y > minY && y < maxY;
+    }
+
+    /*
+     * Grows the pool so at least capacity particles fit without allocating.
+     */
+    public void reserve(int capacity) {
+        if (capacity > mPosX.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Adds a particle at rest at the given position.
+     *
+     * @return the index of the new particle
+     */
+    public int addParticle(float x, float y) {
+        if (mCount == mPosX.length) {
+            resize(mPosX.length * 2);
+        }
+        mGridValid = false;
+        final int i = mCount++;
+        mPosX[i] = x;
+        mPosY[i] = y;
+        mPrevX[i] = x;
+        mPrevY[i] = y;
+        mVelX[i] = 0;
+        mVelY[i] = 0;
+        mDespawned[i] = false;
+        mIsland[i] = AWAKE;
+        mRestSteps[i] = 0;
+        mWake[i] = false;
+
+        final int id = mFreeCount > 0 ? mFreeIds[--mFreeCount] : mNextId++;
+        mIds[i] = id;
+        mIndexOf[id] = i;
+        return i;
+    }
+
+    /**
+     * Removes the particle at the given index right away by moving the last
+     * particle into its slot. Use {@link #despawn} while iterating over the
+     * particles.
+     */
+    public void removeParticle(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mCount);
+        }
+        if (mDespawned[index]) {
+            mDespawnCount--;
+        }
+        swapRemove(index);
+        // the particle moved into the hole may itself be waiting to despawn
+        if (index < mCount && mDespawned[index] && index < mFirstDespawn) {
+            mFirstDespawn = index;
+        }
+    }
+
+    /**
+     * Marks the particle at the given index for removal. It keeps its index
+     * until {@link #flushDespawns()}, so a loop over the particles can
+     * despawn as it goes.
+     */
+    public void despawn(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mCount);
+        }
+        if (mDespawned[index]) {
+            return;
+        }
+        mDespawned[index] = true;
+        if (mDespawnCount == 0 || index < mFirstDespawn) {
+            mFirstDespawn = index;
+        }
+        mDespawnCount++;
+    }
+
+    public boolean isDespawned(int index) {
+        return mDespawned[index];
+    }
+
+    /*
+     * Removes all particles marked by despawn(). Walking down from the end
+     * means the particle moved into a hole is never one still to remove.
+     */
+    public void flushDespawns() {
+        if (mDespawnCount == 0) {
+            return;
+        }
+        for (int i = mCount - 1; i >= mFirstDespawn; i--) {
+            if (mDespawned[i]) {
+                swapRemove(i);
+            }
+        }
+        mDespawnCount = 0;
+    }
+
+    /*
+     * Particles that are still live, not counting the ones waiting for
+     * flushDespawns().
+     */
+    public int getLiveParticleCount() {
+        return mCount - mDespawnCount;
+    }
+
+    public void clear() {
+        mGridValid = false;
+        mCount = 0;
+        mFreeCount = 0;
+        mNextId = 0;
+        mDespawnCount = 0;
+        mSleepingCount = 0;
+        mWakePending = false;
+        mContactCount = 0;
+    }
+
+    private void swapRemove(int index) {
+        // the rest of the island may have been leaning on it
+        if (mIsland[index] != AWAKE) {
+            wakeIsland(mIsland[index]);
+        }
+        mGridValid = false;
+        final int id = mIds[index];
+        final int last = --mCount;
+        if (index != last) {
+            mPosX[index] = mPosX[last];
+            mPosY[index] = mPosY[last];
+            mVelX[index] = mVelX[last];
+            mVelY[index] = mVelY[last];
+            mPrevX[index] = mPrevX[last];
+            mPrevY[index] = mPrevY[last];
+            mDespawned[index] = mDespawned[last];
+            mIsland[index] = mIsland[last];
+            mRestSteps[index] = mRestSteps[last];
+            mRestX[index] = mRestX[last];
+            mRestY[index] = mRestY[last];
+            mWake[index] = mWake[last];
+            mIds[index] = mIds[last];
+            mIndexOf[mIds[index]] = index;
+        } else {
+            mDespawned[index] = false;
+        }
+        mIndexOf[id] = -1;
+        mFreeIds[mFreeCount++] = id;
+    }
+
+    public void computePhysics(int i, float sx, float sy, float dT) {
+
+        final float ax = -sx/5;
+        final float ay = -sy/5;
+
+        mPosX[i] += mVelX[i] * dT + ax * dT * dT / 2;
+        mPosY[i] += mVelY[i] * dT + ay * dT * dT / 2;
+
+        mVelX[i] += ax * dT;
+        mVelY[i] += ay * dT;
+    }
+
+    /*
+     * Resolving constraints and collisions with the Verlet integrator
+     * can be very simple, we simply need to move a colliding or
+     * constrained particle in such way that the constraint is
+     * satisfied.
+     */
+    public void resolveCollisionWithBounds(int i) {
+        final float xmax = mHorizontalBound;
+        final float ymax = mVerticalBound;
+        final float x = mPosX[i];
+        final float y = mPosY[i];
+        if (x > xmax) {
+            mPosX[i] = xmax;
+            mVelX[i] = 0;
+        } else if (x < -xmax) {
+            mPosX[i] = -xmax;
+            mVelX[i] = 0;
+        }
+        if (y > ymax) {
+            mPosY[i] = ymax;
+            mVelY[i] = 0;
+        } else if (y < -ymax) {
+            mPosY[i] = -ymax;
+            mVelY[i] = 0;
+        }
+    }
+
+    /*
+     * Update the position of each particle in the system using the
+     * Verlet integrator.
+     */
+    public void updatePositions(float sx, float sy, float dT) {
+        final int count = mCount;
+        final int[] island = mIsland;
+        for (int i = 0; i < count; i++) {
+            if (island[i] == AWAKE) {
+                computePhysics(i, sx, sy, dT);
+            }
+        }
+    }
+
+    /*
+     * Performs one iteration of the simulation. First updating the
+     * position of all the particles and resolving the constraints and
+     * collisions.
+     */
+    public void update(float sx, float sy, float dT) {
+        if (mSleepingCount > 0
+                && Math.abs(sx - mSleepTiltX) + Math.abs(sy - mSleepTiltY) > WAKE_TILT) {
+            wakeAll();
+        }
+
+        // remember where we were for render interpolation
+        System.arraycopy(mPosX, 0, mPrevX, 0, mCount);
+        System.arraycopy(mPosY, 0, mPrevY, 0, mCount);
+
+        final FrameProfiler profiler = mProfiler;
+        if (mSleepingCount == mCount) {
+            // everything is asleep, nothing can move
+            mLastIterations = 0;
+            mMaxStep = 0;
+            if (profiler != null) {
+                profiler.recordIterations(0);
+            }
+            return;
+        }
+
+        if (profiler != null) {
+            profiler.begin(FrameProfiler.PHASE_INTEGRATE);
+        }
+
+        // update the system's positions
+        updatePositions(sx, sy, dT);
+        if (mContinuousCollision) {
+            sweepFastParticles();
+        }
+
+        if (profiler != null) {
+            profiler.end(FrameProfiler.PHASE_INTEGRATE);
+            profiler.begin(FrameProfiler.PHASE_SOLVE);
+        }
+        System.arraycopy(mPosX, 0, mSolveX, 0, mCount);
+        System.arraycopy(mPosY, 0, mSolveY, 0, mCount);
+
+        /*
+         * Resolve collisions. If a collision is detected the particle is
+         * moved away using a virtual spring of infinite stiffness.
+         */
+        final ParallelSolver parallelSolver = mParallelSolver;
+        final boolean parallel = parallelSolver != null
+                && mCount >= parallelSolver.getMinParticles();
+        final boolean warmStart = mWarmStarting && !parallel;
+        if (warmStart) {
+            solveCachedContacts();
+        }
+
+        /*
+         * Without a tolerance we stop once a pass finds no collision at all,
+         * with one as soon as the balls overlap little enough in total. A
+         * pass only sees each overlap before resolving it, and resolving one
+         * can push a ball back into a neighbour it already checked, so once a
+         * pass found little enough what is really left is measured before
+         * stopping. Balls that fell off the table are put back first, as
+         * putting them back after their pairs would push them into the balls
+         * along the edge.
+         */
+        final float tolerance = mPenetrationTolerance;
+        if (tolerance > 0) {
+            clampToBounds();
+        }
+        boolean more = true;
+        int k = 0;
+        for (; k < mMaxIterations && more; k++) {
+            // the first pass sees every contact of this step
+            mRecordContacts = warmStart && k == 0;
+            boolean contacts;
+            if (!mBroadphaseEnabled) {
+                contacts = solveBruteForce();
+            } else {
+                mGrid.rebuild(mPosX, mPosY, mCount);
+                if (parallel) {
+                    contacts = parallelSolver.solve(this, mGrid, k);
+                    mPassPenetration = parallelSolver.getPenetration();
+                    mPassContacts = parallelSolver.getContacts();
+                } else {
+                    contacts = solveWithGrid();
+                }
+            }
+            /*
+             * A pass that doesn't settle the pile can move a ball by more
+             * than a cell, so queries can't use the grid it was built for.
+             */
+            mGridValid = false;
+            if (tolerance > 0) {
+                more = mPassPenetration > tolerance
+                        || (k + 1 < mMaxIterations && measurePenetration() > tolerance);
+            } else {
+                more = contacts;
+            }
+        }
+        mRecordContacts = false;
+        if (!warmStart) {
+            mContactCount = 0;
+        }
+        mLastIterations = k;
+        if (mWarmStarting) {
+            absorbContactVelocities();
+        }
+
+        if (mWakePending) {
+            wakeTouched();
+        }
+        if (mSleepingEnabled && mWarmStarting) {
+            updateSleep(sx, sy);
+        }
+
+        if (profiler != null) {
+            profiler.end(FrameProfiler.PHASE_SOLVE);
+            profiler.recordIterations(k);
+        }
+    }
+
+    /*
+     * Puts every awake ball back on the table.
+     */
+    private void clampToBounds() {
+        final int count = mCount;
+        final int[] island = mIsland;
+        for (int i = 0; i < count; i++) {
+            if (island[i] == AWAKE) {
+                resolveCollisionWithBounds(i);
+            }
+        }
+    }
+
+    /*
+     * Moves every ball that went far enough this step to tunnel through
+     * another one back to where it first touched a ball, so the solver
+     * pushes the two apart on the side it came from rather than the far
+     * side. Most steps nothing is fast and this is one pass over the balls.
+     */
+    private void sweepFastParticles() {
+        final int count = mCount;
+        final float[] posX = mPosX;
+        final float[] posY = mPosY;
+        final float[] prevX = mPrevX;
+        final float[] prevY = mPrevY;
+        final float fast = SWEEP_THRESHOLD * mBallDiameter;
+        final float fast2 = fast * fast;
+
+        float maxStep2 = 0;
+        for (int i = 0; i < count; i++) {
+            final float dx = posX[i] - prevX[i];
+            final float dy = posY[i] - prevY[i];
+            final float d2 = dx * dx + dy * dy;
+            if (d2 > maxStep2) {
+                maxStep2 = d2;
+            }
+        }
+        mMaxStep = (float) Math.sqrt(maxStep2);
+        if (maxStep2 <= fast2) {
+            return;
+        }
+
+        if (mBroadphaseEnabled) {
+            mGrid.rebuild(posX, posY, count);
+            mGridValid = true;
+        }
+        for (int i = 0; i < count; i++) {
+            final float dx = posX[i] - prevX[i];
+            final float dy = posY[i] - prevY[i];
+            if (dx * dx + dy * dy <= fast2) {
+                continue;
+            }
+            final float toi = mBroadphaseEnabled ? sweepWithGrid(i) : sweepBruteForce(i);
+            if (toi < 1) {
+                posX[i] = prevX[i] + dx * toi;
+                posY[i] = prevY[i] + dy * toi;
+            }
+        }
+    }
+
+    private float sweepBruteForce(int i) {
+        float toi = 1;
+        for (int j = 0; j < mCount; j++) {
+            if (j != i) {
+                toi = Math.min(toi, timeOfImpact(i, j));
+            }
+        }
+        return toi;
+    }
+
+    /*
+     * Only balls that end up within a diameter plus the longest step of the
+     * swept path can have crossed it.
+     */
+    private float sweepWithGrid(int i) {
+        final SpatialGrid grid = mGrid;
+        final float reach = mBallDiameter + mMaxStep;
+        final float x0 = mPrevX[i];
+        final float y0 = mPrevY[i];
+        final float x1 = mPosX[i];
+        final float y1 = mPosY[i];
+        final int cx0 = grid.cellX(Math.min(x0, x1) - reach);
+        final int cx1 = grid.cellX(Math.max(x0, x1) + reach);
+        final int cy0 = grid.cellY(Math.min(y0, y1) - reach);
+        final int cy1 = grid.cellY(Math.max(y0, y1) + reach);
+        final int columns = grid.getColumns();
+        final int[] cellStart = grid.getCellStart();
+        final int[] sorted = grid.getSortedIndices();
+
+        float toi = 1;
+        for (int y = cy0; y <= cy1; y++) {
+            for (int x = cx0; x <= cx1; x++) {
+                final int c = y * columns + x;
+                for (int s = cellStart[c], end = cellStart[c + 1]; s < end; s++) {
+                    final int j = sorted[s];
+                    if (j != i) {
+                        toi = Math.min(toi, timeOfImpact(i, j));
+                    }
+                }
+            }
+        }
+        return toi;
+    }
+
+    /*
+     * Fraction of this step after which balls i and j, both moving in a
+     * straight line from their previous positions, first touch, or 1 if they
+     * don't. Balls that already touched at the start are left to the solver.
+     */
+    private float timeOfImpact(int i, int j) {
+        final float sx = mPrevX[i] - mPrevX[j];
+        final float sy = mPrevY[i] - mPrevY[j];
+        final float c = sx * sx + sy * sy - mBallDiameter2;
+        if (c <= 0) {
+            return 1;
+        }
+        final float dx = (mPosX[i] - mPrevX[i]) - (mPosX[j] - mPrevX[j]);
+        final float dy = (mPosY[i] - mPrevY[i]) - (mPosY[j] - mPrevY[j]);
+        final float b = sx * dx + sy * dy;
+        if (b >= 0) {
+            // moving apart
+            return 1;
+        }
+        final float a = dx * dx + dy * dy;
+        final float discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return 1;
+        }
+        final float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        return t < 1 ? t : 1;
+    }
+
+    /*
+     * A ball pushed back by its neighbours loses the part of its velocity
+     * that drives it into them, like a ball stopped by a wall. Otherwise a
+     * ball pressed into a pile keeps gaining speed it can never use and the
+     * pile never comes to rest. This changes how balls bounce off each other,
+     * so it is part of warm starting and off by default.
+     */
+    private void absorbContactVelocities() {
+        final int count = mCount;
+        final int[] island = mIsland;
+        for (int i = 0; i < count; i++) {
+            if (island[i] != AWAKE) {
+                continue;
+            }
+            final float cx = mPosX[i] - mSolveX[i];
+            final float cy = mPosY[i] - mSolveY[i];
+            final float vc = mVelX[i] * cx + mVelY[i] * cy;
+            if (vc < 0) {
+                final float f = vc / (cx * cx + cy * cy);
+                mVelX[i] -= f * cx;
+                mVelY[i] -= f * cy;
+            }
+        }
+    }
+
+    /*
+     * Counts how long every awake ball has stayed where it is and every few
+     * steps puts the islands that rested long enough to sleep. A ball in a
+     * pile jitters a little around its place, so resting means not getting
+     * anywhere rather than not moving at all.
+     */
+    private void updateSleep(float sx, float sy) {
+        final float drift = REST_DRIFT * mBallDiameter;
+        final float drift2 = drift * drift;
+        final int count = mCount;
+        final int[] island = mIsland;
+        final int[] restSteps = mRestSteps;
+        boolean resting = false;
+        for (int i = 0; i < count; i++) {
+            if (island[i] != AWAKE) {
+                continue;
+            }
+            final float dx = mPosX[i] - mRestX[i];
+            final float dy = mPosY[i] - mRestY[i];
+            if (restSteps[i] == 0 || dx * dx + dy * dy >= drift2) {
+                mRestX[i] = mPosX[i];
+                mRestY[i] = mPosY[i];
+                restSteps[i] = 1;
+            } else if (restSteps[i] < SLEEP_STEPS) {
+                restSteps[i]++;
+            } else {
+                resting = true;
+            }
+        }
+
+        if (--mSleepCheckCountdown > 0) {
+            return;
+        }
+        mSleepCheckCountdown = SLEEP_CHECK_INTERVAL;
+        if (resting) {
+            sleepRestingIslands(sx, sy);
+        }
+    }
+
+    /*
+     * Groups the awake balls into islands of touching balls and puts every
+     * island whose balls all rested for SLEEP_STEPS to sleep. A ball touching
+     * a sleeping island wakes it instead, so the two can settle and fall
+     * asleep as one.
+     */
+    private void sleepRestingIslands(float sx, float sy) {
+        final int count = mCount;
+        final int[] island = mIsland;
+        final int[] restSteps = mRestSteps;
+        final int[] parent = mParent;
+        final int[] minRest = mMinRest;
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            minRest[i] = SLEEP_STEPS;
+        }
+
+        final SpatialGrid grid = mGrid;
+        grid.rebuild(mPosX, mPosY, count);
+        mGridValid = true;
+        final int[] cellStart = grid.getCellStart();
+        final int[] sorted = grid.getSortedIndices();
+        final int columns = grid.getColumns();
+        final int rows = grid.getRows();
+        final float contact = mBallDiameter * CONTACT_SLOP;
+        final float contact2 = contact * contact;
+        for (int i = 0; i < count; i++) {
+            if (island[i] != AWAKE) {
+                continue;
+            }
+            final int cell = grid.getCell(i);
+            final int cx = cell % columns;
+            final int cy = cell / columns;
+            final int x0 = Math.max(cx - 1, 0);
+            final int x1 = Math.min(cx + 1, columns - 1);
+            final int y0 = Math.max(cy - 1, 0);
+            final int y1 = Math.min(cy + 1, rows - 1);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    final int c = y * columns + x;
+                    for (int s = cellStart[c], end = cellStart[c + 1]; s < end; s++) {
+                        final int j = sorted[s];
+                        if (j == i || (island[j] == AWAKE && j < i)) {
+                            continue;
+                        }
+                        final float dx = mPosX[j] - mPosX[i];
+                        final float dy = mPosY[j] - mPosY[i];
+                        if (dx * dx + dy * dy > contact2) {
+                            continue;
+                        }
+                        if (island[j] != AWAKE) {
+                            mWake[j] = true;
+                            mWakePending = true;
+                            restSteps[i] = 0;
+                        } else {
+                            parent[find(parent, i)] = find(parent, j);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (island[i] == AWAKE) {
+                final int root = find(parent, i);
+                minRest[root] = Math.min(minRest[root], restSteps[i]);
+            }
+        }
+
+        // labels stay unique for long enough, a clash only wakes too much
+        final int base = mNextIsland;
+        mNextIsland = (base + count) & Integer.MAX_VALUE;
+        final boolean wasAwake = mSleepingCount == 0;
+        for (int i = 0; i < count; i++) {
+            if (island[i] == AWAKE) {
+                final int root = find(parent, i);
+                if (minRest[root] >= SLEEP_STEPS) {
+                    island[i] = (base + root) & Integer.MAX_VALUE;
+                    mVelX[i] = 0;
+                    mVelY[i] = 0;
+                    mSleepingCount++;
+                }
+            }
+        }
+        if (wasAwake && mSleepingCount > 0) {
+            mSleepTiltX = sx;
+            mSleepTiltY = sy;
+        }
+
+        if (mWakePending) {
+            wakeTouched();
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /*
+     * Wakes the islands of all sleeping balls that were bumped into.
+     */
+    private void wakeTouched() {
+        mWakePending = false;
+        final int count = mCount;
+        for (int i = 0; i < count; i++) {
+            if (mWake[i]) {
+                mWake[i] = false;
+                if (mIsland[i] != AWAKE) {
+                    wakeIsland(mIsland[i]);
+                }
+            }
+        }
+    }
+
+    private void wakeIsland(int label) {
+        final int count = mCount;
+        final int[] island = mIsland;
+        for (int i = 0; i < count; i++) {
+            if (island[i] == label) {
+                island[i] = AWAKE;
+                mRestSteps[i] = 0;
+                mSleepingCount--;
+            }
+        }
+    }
+
+    private void wakeAll() {
+        final int count = mCount;
+        for (int i = 0; i < count; i++) {
+            mIsland[i] = AWAKE;
+            mRestSteps[i] = 0;
+            mWake[i] = false;
+        }
+        mSleepingCount = 0;
+        mWakePending = false;
+    }
+
+    /*
+     * Each particle is tested against every other particle for collision.
+     * Kept as the reference the broadphase is verified against.
+     */
+    private boolean solveBruteForce() {
+        beginPass();
+        boolean more = false;
+        final int count = mCount;
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                more |= resolveAndRecord(i, j);
+            }
+            resolveCollisionWithBounds(i);
+        }
+        return more;
+    }
+
+    /*
+     * Each particle is only tested against the particles of its own and the
+     * eight surrounding grid cells.
+     */
+    private boolean solveWithGrid() {
+        final SpatialGrid grid = mGrid;
+
+        final int[] cellStart = grid.getCellStart();
+        final int[] sorted = grid.getSortedIndices();
+        final int columns = grid.getColumns();
+        final int rows = grid.getRows();
+
+        beginPass();
+        boolean more = false;
+        final int count = mCount;
+        for (int i = 0; i < count; i++) {
+            final int cell = grid.getCell(i);
+            final int cx = cell % columns;
+            final int cy = cell / columns;
+            final int x0 = Math.max(cx - 1, 0);
+            final int x1 = Math.min(cx + 1, columns - 1);
+            final int y0 = Math.max(cy - 1, 0);
+            final int y1 = Math.min(cy + 1, rows - 1);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    final int c = y * columns + x;
+                    for (int s = cellStart[c], end = cellStart[c + 1]; s < end; s++) {
+                        final int j = sorted[s];
+                        if (j > i) {
+                            more |= resolveAndRecord(i, j);
+                        }
+                    }
+                }
+            }
+            resolveCollisionWithBounds(i);
+        }
+        return more;
+    }
+
+    /*
+     * Total overlap of the balls where they are now, without moving any.
+     */
+    private float measurePenetration() {
+        final int count = mCount;
+        final int[] island = mIsland;
+        float penetration = 0;
+        if (!mBroadphaseEnabled) {
+            for (int i = 0; i < count; i++) {
+                for (int j = i + 1; j < count; j++) {
+                    if (island[i] == AWAKE || island[j] == AWAKE) {
+                        penetration += overlap(i, j);
+                    }
+                }
+            }
+            return penetration;
+        }
+
+        final SpatialGrid grid = mGrid;
+        grid.rebuild(mPosX, mPosY, count);
+        mGridValid = true;
+        final int[] cellStart = grid.getCellStart();
+        final int[] sorted = grid.getSortedIndices();
+        final int columns = grid.getColumns();
+        final int rows = grid.getRows();
+        for (int i = 0; i < count; i++) {
+            final int cell = grid.getCell(i);
+            final int cx = cell % columns;
+            final int cy = cell / columns;
+            final int x0 = Math.max(cx - 1, 0);
+            final int x1 = Math.min(cx + 1, columns - 1);
+            final int y0 = Math.max(cy - 1, 0);
+            final int y1 = Math.min(cy + 1, rows - 1);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    final int c = y * columns + x;
+                    for (int s = cellStart[c], end = cellStart[c + 1]; s < end; s++) {
+                        final int j = sorted[s];
+                        if (j > i && (island[i] == AWAKE || island[j] == AWAKE)) {
+                            penetration += overlap(i, j);
+                        }
+                    }
+                }
+            }
+        }
+        return penetration;
+    }
+
+    private float overlap(int i, int j) {
+        final float dx = mPosX[j] - mPosX[i];
+        final float dy = mPosY[j] - mPosY[i];
+        final float dd = dx * dx + dy * dy;
+        if (dd >= mBallDiameter2) {
+            return 0;
+        }
+        return mBallDiameter - (float) Math.sqrt(dd);
+    }
+
+    private void beginPass() {
+        mPassPenetration = 0;
+        mPassContacts = 0;
+        if (mRecordContacts) {
+            mContactCount = 0;
+        }
+    }
+
+    /*
+     * resolvePair() for the serial passes, which also add up the
+     * penetration and, in the first pass, remember the contact.
+     */
+    private boolean resolveAndRecord(int i, int j) {
+        final float penetration = resolvePair(i, j);
+        if (penetration < 0) {
+            return false;
+        }
+        mPassPenetration += penetration;
+        mPassContacts++;
+        if (mRecordContacts) {
+            recordContact(mIds[i], mIds[j]);
+        }
+        return true;
+    }
+
+    private void recordContact(int idA, int idB) {
+        if (mContactCount == mContactA.length) {
+            mContactA = copyOf(mContactA, mContactCount * 2);
+            mContactB = copyOf(mContactB, mContactCount * 2);
+        }
+        mContactA[mContactCount] = idA;
+        mContactB[mContactCount] = idB;
+        mContactCount++;
+    }
+
+    /*
+     * Warm start: most contacts of the last step still exist, so resolving
+     * them first, without a grid, leaves less for the full passes to do.
+     */
+    private void solveCachedContacts() {
+        final int[] indexOf = mIndexOf;
+        final int contacts = mContactCount;
+        for (int c = 0; c < contacts; c++) {
+            final int i = indexOf[mContactA[c]];
+            final int j = indexOf[mContactB[c]];
+            if (i >= 0 && j >= 0) {
+                resolvePair(i, j);
+            }
+        }
+    }
+
+    /*
+     * Pushes particles i and j apart if they overlap.
+     *
+     * @return how deep they overlapped, or NO_CONTACT
+     */
+    private float resolvePair(int i, int j) {
+        if (mIsland[i] != AWAKE && mIsland[j] != AWAKE) {
+            return NO_CONTACT;
+        }
+        final float dx = mPosX[j] - mPosX[i];
+        final float dy = mPosY[j] - mPosY[i];
+        // Check for collisions
+        if (dx * dx + dy * dy > mBallDiameter2) {
+            return NO_CONTACT;
+        }
+        requestWake(i, j);
+        /*
+         * add a little bit of entropy, after nothing is
+         * perfect in the universe.
+         */
+        return separate(i, j,
+                dx + (mRandom.nextFloat() - 0.5f) * 0.0001f,
+                dy + (mRandom.nextFloat() - 0.5f) * 0.0001f);
+    }
+
+    /*
+     * Same as resolvePair(i, j), but the entropy is a hash of the pair and
+     * the solver pass instead of the next random number. The result then
+     * only depends on the input, whichever thread resolves the pair.
+     */
+    float resolvePair(int i, int j, int pass) {
+        if (mIsland[i] != AWAKE && mIsland[j] != AWAKE) {
+            return NO_CONTACT;
+        }
+        final float dx = mPosX[j] - mPosX[i];
+        final float dy = mPosY[j] - mPosY[i];
+        if (dx * dx + dy * dy > mBallDiameter2) {
+            return NO_CONTACT;
+        }
+        requestWake(i, j);
+        return separate(i, j, dx + hashEntropy(i, j, pass, 0), dy + hashEntropy(i, j, pass, 1));
+    }
+
+    /*
+     * If one of two colliding balls is asleep, its island is woken once the
+     * solve is done. Only sets flags, so solver threads may call it at once.
+     */
+    private void requestWake(int i, int j) {
+        if (mIsland[i] != AWAKE) {
+            mWake[i] = true;
+            mWakePending = true;
+        } else if (mIsland[j] != AWAKE) {
+            mWake[j] = true;
+            mWakePending = true;
+        }
+    }
+
+    private static float hashEntropy(int i, int j, int pass, int axis) {
+        int h = i * 0x9E3779B1 ^ j * 0x85EBCA77 ^ pass * 0xC2B2AE3D ^ axis;
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        h *= 0x846CA68B;
+        h ^= h >>> 16;
+        return ((h >>> 8) * (1.0f / (1 << 24)) - 0.5f) * 0.0001f;
+    }
+
+    /*
+     * Moves i and j apart along (dx, dy) until they just touch and returns
+     * by how much they overlapped.
+     */
+    private float separate(int i, int j, float dx, float dy) {
+        final float[] posX = mPosX;
+        final float[] posY = mPosY;
+        final float dd = dx * dx + dy * dy;
+        // simulate the spring
+        final float d = (float) Math.sqrt(dd);
+        final float c = (0.5f * (mBallDiameter - d)) / d;
+        final float effectX = dx * c;
+        final float effectY = dy * c;
+        posX[i] -= effectX;
+        posY[i] -= effectY;
+        posX[j] += effectX;
+        posY[j] += effectY;
+        return Math.max(mBallDiameter - d, 0);
+    }
+
+    /*
+     * The brute-force path tests every pair and is only meant for
+     * verifying the broadphase.
+     */
+    public void setBroadphaseEnabled(boolean enabled) {
+        mBroadphaseEnabled = enabled;
+    }
+
+    public boolean isBroadphaseEnabled() {
+        return mBroadphaseEnabled;
+    }
+
+    /*
+     * Solves large systems on several cores, null to always stay on the
+     * calling thread. Only used together with the broadphase.
+     */
+    public void setParallelSolver(ParallelSolver parallelSolver) {
+        mParallelSolver = parallelSolver;
+    }
+
+    public ParallelSolver getParallelSolver() {
+        return mParallelSolver;
+    }
+
+    /*
+     * Lets resting islands fall asleep, on by default but only while warm
+     * starting is on too. Without it a ball pressed into a pile keeps the
+     * speed that drives it into its neighbours and the pile never comes to
+     * rest. Turning it off wakes everything.
+     */
+    public void setSleepingEnabled(boolean enabled) {
+        mSleepingEnabled = enabled;
+        if (!enabled) {
+            wakeAll();
+        }
+    }
+
+    public boolean isSleepingEnabled() {
+        return mSleepingEnabled;
+    }
+
+    public boolean isSleeping(int i) {
+        return mIsland[i] != AWAKE;
+    }
+
+    public int getSleepingCount() {
+        return mSleepingCount;
+    }
+
+    /*
+     * Sweeps fast balls against each other and cups against the path of
+     * every ball instead of only testing where things end up, so a long
+     * step or a stalled frame can't make balls jump through each other or
+     * over a cup. Off by default.
+     */
+    public void setContinuousCollision(boolean continuous) {
+        mContinuousCollision = continuous;
+        mMaxStep = 0;
+    }
+
+    public boolean isContinuousCollision() {
+        return mContinuousCollision;
+    }
+
+    /*
+     * Times every update, null to stop. Set it before the simulation thread
+     * starts or from that thread.
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        mProfiler = profiler;
+    }
+
+    /*
+     * Most collision passes per update, NUM_MAX_ITERATIONS by default. Each
+     * pass costs about as much as the rest of the step together, so this
+     * bounds the worst case.
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("maxIterations must be positive: "
+                    + maxIterations);
+        }
+        mMaxIterations = maxIterations;
+    }
+
+    public int getMaxIterations() {
+        return mMaxIterations;
+    }
+
+    /*
+     * Stops the passes as soon as the contacts one finds overlap by at most
+     * this many meters in total, instead of only once a pass finds no
+     * collision at all, which a pile pressed into a corner never gets to.
+     * The overlap left after the last pass is getLastPenetration(). 0, the
+     * default, keeps the old behaviour.
+     */
+    public void setPenetrationTolerance(float tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("tolerance must not be negative: " + tolerance);
+        }
+        mPenetrationTolerance = tolerance;
+    }
+
+    public float getPenetrationTolerance() {
+        return mPenetrationTolerance;
+    }
+
+    /*
+     * Resolves the contacts of the last step before the first full pass,
+     * only in the serial solver, and lets pushed balls lose the velocity
+     * that drives them into their neighbours, so piles settle and can fall
+     * asleep. Off by default, which keeps the original bounce.
+     */
+    public void setWarmStarting(boolean warmStarting) {
+        mWarmStarting = warmStarting;
+        mContactCount = 0;
+        if (!warmStarting) {
+            wakeAll();
+        }
+    }
+
+    public boolean isWarmStarting() {
+        return mWarmStarting;
+    }
+
+    /*
+     * Total overlap the last collision pass of the last update found, in
+     * meters, and between how many contacts.
+     */
+    public float getLastPenetration() {
+        return mPassPenetration;
+    }
+
+    public int getLastContacts() {
+        return mPassContacts;
+    }
+
+    /*
+     * Collision iterations the last update needed, at most
+     * getMaxIterations().
+     */
+    public int getLastIterations() {
+        return mLastIterations;
+    }
+
+    public int getParticleCount() {
+        return mCount;
+    }
+
+    public float getPosX(int i) {
+        return mPosX[i];
+    }
+
+    public float getPosY(int i) {
+        return mPosY[i];
+    }
+
+    /*
+     * Position blended between the previous and the current step, alpha in
+     * [0, 1].
+     */
+    public float getInterpolatedPosX(int i, float alpha) {
+        return mPrevX[i] + (mPosX[i] - mPrevX[i]) * alpha;
+    }
+
+    public float getInterpolatedPosY(int i, float alpha) {
+        return mPrevY[i] + (mPosY[i] - mPrevY[i]) * alpha;
+    }
+
+    /*
+     * Copies the current and previous positions of all particles into the
+     * given arrays, which must hold at least getParticleCount() entries.
+     */
+    public void copyPositions(float[] posX, float[] posY, float[] prevX, float[] prevY) {
+        System.arraycopy(mPosX, 0, posX, 0, mCount);
+        System.arraycopy(mPosY, 0, posY, 0, mCount);
+        System.arraycopy(mPrevX, 0, prevX, 0, mCount);
+        System.arraycopy(mPrevY, 0, prevY, 0, mCount);
+    }
+
+    /*
+     * Stable id of the particle at index i.
+     */
+    public int getId(int i) {
+        return mIds[i];
+    }
+
+    /*
+     * Current index of the particle with the given id, or -1 if it is gone.
+     */
+    public int getIndexOf(int id) {
+        return id < mNextId ? mIndexOf[id] : -1;
+    }
+
+    public float getVelX(int i) {
+        return mVelX[i];
+    }
+
+    public float getVelY(int i) {
+        return mVelY[i];
+    }
+
+    public FastRandom getRandom() {
+        return mRandom;
+    }
+
+    public float getBallDiameter() {
+        return mBallDiameter;
+    }
+
+    public float getHorizontalBound() {
+        return mHorizontalBound;
+    }
+
+    public float getVerticalBound() {
+        return mVerticalBound;
+    }
+
+    private void resize(int capacity) {
+        mPosX = copyOf(mPosX, capacity);
+        mPosY = copyOf(mPosY, capacity);
+        mVelX = copyOf(mVelX, capacity);
+        mVelY = copyOf(mVelY, capacity);
+        mPrevX = copyOf(mPrevX, capacity);
+        mPrevY = copyOf(mPrevY, capacity);
+        mIds = copyOf(mIds, capacity);
+        mIndexOf = copyOf(mIndexOf, capacity);
+        mFreeIds = copyOf(mFreeIds, capacity);
+
+        mDespawned = copyOf(mDespawned, capacity);
+        mIsland = copyOf(mIsland, capacity);
+        mRestSteps = copyOf(mRestSteps, capacity);
+        mRestX = copyOf(mRestX, capacity);
+        mRestY = copyOf(mRestY, capacity);
+        mWake = copyOf(mWake, capacity);
+        mSolveX = new float[capacity];
+        mSolveY = new float[capacity];
+        mParent = new int[capacity];
+        mMinRest = new int[capacity];
+    }
+
+    private static boolean[] copyOf(boolean[] src, int capacity) {
+        final boolean[] dst = new boolean[capacity];
+        System.arraycopy(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    private static float[] copyOf(float[] src, int capacity) {
+        final float[] dst = new float[capacity];
+        System.arraycopy(src, 0, dst, 0, src.length);
+        return dst;
+    }
+
+    private static int[] copyOf(int[] src, int capacity) {
+        final int[] dst = new int[capacity];
+        System.arraycopy(src, 0, dst, 0, src.length);
+        return dst;
+    }
+}
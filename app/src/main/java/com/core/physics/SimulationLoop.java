@@ -0,0 +1,207 @@
+package com.core.physics;
+
+import com.core.input.InputRecorder;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the simulation on its own thread, paced by a {@link FixedStepClock}.
+ *
+ * The loop wakes up for every physics step, reads the inputs once, runs all
+ * steps that are due and then lets the callback publish a frame. Nothing here
+ * touches the UI; the callback decides how a finished frame reaches the
+ * screen.
+ *
+ * Everything the simulation depends on, the tilt and the table bounds, goes
+ * through the loop, so an {@link InputRecorder} attached here captures all of
+ * it.
+ */
+public class SimulationLoop implements Runnable {
+
+    public interface Callback {
+        /*
+         * The table changed size, in meters.
+         */
+        void onBounds(float horizontalBound, float verticalBound);
+
+        /*
+         * Advances the simulation by one fixed step of dT seconds under the
+         * given tilt.
+         */
+        void onStep(float sx, float sy, float dT);
+
+        /*
+         * Called after the steps of one wake-up, stepTimeNanos is the
+         * monotonic time the current state corresponds to and inputNanos
+         * the timestamp of the newest sensor sample it is based on, on the
+         * same clock.
+         */
+        void onFrame(long stepTimeNanos, long stepNanos, long inputNanos);
+    }
+
+    public interface InputSource {
+        /*
+         * Stores the tilt for a frame computed at nowNanos in tilt[0] and
+         * tilt[1] and returns the timestamp of the newest sample it came
+         * from, in System.nanoTime() nanoseconds.
+         */
+        long readTilt(long nowNanos, float[] tilt);
+    }
+
+    private final FixedStepClock mClock;
+    private final Callback mCallback;
+    private final InputSource mInput;
+    private volatile boolean mRunning;
+    private Thread mThread;
+
+    // written by any thread, picked up at the next wake-up
+    private volatile float mHorizontalBound;
+    private volatile float mVerticalBound;
+
+    // only touched on the simulation thread
+    private final float[] mTilt = new float[2];
+    private float mAppliedHorizontalBound = Float.NaN;
+    private float mAppliedVerticalBound = Float.NaN;
+    private long mLastSampleNanos = Long.MIN_VALUE;
+    private float mRecordedX = Float.NaN;
+    private float mRecordedY = Float.NaN;
+    private InputRecorder mRecorder;
+
+    public SimulationLoop(FixedStepClock clock, InputSource input, Callback callback) {
+        mClock = clock;
+        mInput = input;
+        mCallback = callback;
+    }
+
+    /*
+     * Records all input from now on, null to stop. Only call while the loop
+     * is stopped.
+     */
+    public void setRecorder(InputRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    /*
+     * The loop doesn't step until the bounds were set once.
+     */
+    public void setBounds(float horizontalBound, float verticalBound) {
+        mHorizontalBound = horizontalBound;
+        mVerticalBound = verticalBound;
+    }
+
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mRunning = true;
+        mThread = new Thread(this, "simulation");
+        mThread.start();
+    }
+
+    /*
+     * Stops the loop and waits for the current step to finish, so the
+     * simulation state can safely be touched afterwards.
+     */
+    public synchronized void stop() {
+        if (mThread == null) {
+            return;
+        }
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                mThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        mThread = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void run() {
+        final FixedStepClock clock = mClock;
+        // don't simulate the time we spent stopped
+        clock.reset();
+        if (mRecorder != null) {
+            mRecorder.recordReset();
+        }
+        while (mRunning) {
+            if (!hasBounds()) {
+                // the view isn't laid out yet, a step now would clamp every
+                // ball onto the origin, so wait without letting time pass
+                clock.reset();
+                LockSupport.parkNanos(clock.getStepNanos());
+                continue;
+            }
+            final long now = System.nanoTime();
+            readInputs(now);
+            runFrame(clock, mCallback, now, mTilt[0], mTilt[1], mLastSampleNanos);
+            LockSupport.parkNanos(clock.getNanosUntilNextStep());
+        }
+    }
+
+    /*
+     * False until setBounds() was given a table of some size.
+     */
+    private boolean hasBounds() {
+        return mHorizontalBound > 0 && mVerticalBound > 0;
+    }
+
+    private void readInputs(long now) {
+        final InputRecorder recorder = mRecorder;
+
+        final float horizontalBound = mHorizontalBound;
+        final float verticalBound = mVerticalBound;
+        if (horizontalBound != mAppliedHorizontalBound
+                || verticalBound != mAppliedVerticalBound) {
+            mAppliedHorizontalBound = horizontalBound;
+            mAppliedVerticalBound = verticalBound;
+            mCallback.onBounds(horizontalBound, verticalBound);
+            if (recorder != null) {
+                recorder.recordBounds(horizontalBound, verticalBound);
+            }
+        }
+
+        final long sampleNanos = mInput.readTilt(now, mTilt);
+        if (recorder != null) {
+            // an extrapolated tilt changes without a new sample
+            if (sampleNanos != mLastSampleNanos
+                    || mTilt[0] != mRecordedX || mTilt[1] != mRecordedY) {
+                recorder.recordSample(sampleNanos, mTilt[0], mTilt[1]);
+                mRecordedX = mTilt[0];
+                mRecordedY = mTilt[1];
+            }
+            recorder.recordFrame(now);
+        }
+        mLastSampleNanos = sampleNanos;
+    }
+
+    /*
+     * Advances the clock to now and runs the steps that are due with the
+     * given tilt. Shared with InputPlayer so a replay steps exactly like the
+     * live loop did.
+     */
+    public static int runFrame(FixedStepClock clock, Callback callback, long now,
+                               float sx, float sy, long inputNanos) {
+        final int steps = clock.advance(now);
+        final float dT = clock.getStepSeconds();
+        for (int i = 0; i < steps; i++) {
+            callback.onStep(sx, sy, dT);
+        }
+        if (steps > 0) {
+            callback.onFrame(now - clock.getAccumulatedNanos(), clock.getStepNanos(),
+                    inputNanos);
+        }
+        return steps;
+    }
+}
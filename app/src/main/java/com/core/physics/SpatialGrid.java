@@ -0,0 +1,134 @@
+package com.core.physics;
+
+/**
+ * Uniform grid broadphase over the table.
+ *
+ * Cells are one ball diameter wide, so two balls can only touch if they sit
+ * in the same or in adjacent cells. The grid is rebuilt with a counting sort
+ * into flat int arrays: after {@link #rebuild} the particles of cell c are
+ * {@code getSortedIndices()[getCellStart()[c] .. getCellStart()[c + 1]]}, in
+ * ascending index order. Rebuilding does not allocate unless the particle
+ * count or the table outgrows the current arrays.
+ *
+ * Positions outside the table are clamped into the border cells, which keeps
+ * neighbouring balls in neighbouring cells.
+ */
+public class SpatialGrid {
+    private final float mCellSize;
+    private final float mInvCellSize;
+
+    private float mMinX;
+    private float mMinY;
+    private int mColumns = 1;
+    private int mRows = 1;
+
+    private int[] mCellStart = new int[2];
+    private int[] mCellOf = new int[0];
+    private int[] mSortedIndices = new int[0];
+    private int mCount;
+
+    public SpatialGrid(float cellSize) {
+        mCellSize = cellSize;
+        mInvCellSize = 1.0f / cellSize;
+    }
+
+    /*
+     * Sizes the grid to cover [-horizontalBound, horizontalBound] x
+     * [-verticalBound, verticalBound].
+     */
+    public void setBounds(float horizontalBound, float verticalBound) {
+        mMinX = -horizontalBound;
+        mMinY = -verticalBound;
+        mColumns = Math.max(1, (int) Math.ceil(2 * horizontalBound * mInvCellSize) + 1);
+        mRows = Math.max(1, (int) Math.ceil(2 * verticalBound * mInvCellSize) + 1);
+
+        final int cells = mColumns * mRows;
+        if (mCellStart.length < cells + 1) {
+            mCellStart = new int[cells + 1];
+        }
+        mCount = 0;
+    }
+
+    /*
+     * Bins the first count particles into their cells.
+     */
+    public void rebuild(float[] posX, float[] posY, int count) {
+        if (mCellOf.length < count) {
+            final int capacity = Math.max(count, mCellOf.length * 2);
+            mCellOf = new int[capacity];
+            mSortedIndices = new int[capacity];
+        }
+
+        final int cells = mColumns * mRows;
+        final int[] cellStart = mCellStart;
+        final int[] cellOf = mCellOf;
+        for (int c = 0; c <= cells; c++) {
+            cellStart[c] = 0;
+        }
+
+        // count the particles of each cell
+        for (int i = 0; i < count; i++) {
+            final int c = cellOf(posX[i], posY[i]);
+            cellOf[i] = c;
+            cellStart[c]++;
+        }
+
+        // running sum, cellStart[c] now points one past the end of cell c
+        int sum = 0;
+        for (int c = 0; c <= cells; c++) {
+            sum += cellStart[c];
+            cellStart[c] = sum;
+        }
+
+        // fill backwards so each cell ends up sorted and cellStart[c] is its start
+        for (int i = count - 1; i >= 0; i--) {
+            mSortedIndices[--cellStart[cellOf[i]]] = i;
+        }
+        mCount = count;
+    }
+
+    public int cellOf(float x, float y) {
+        return cellY(y) * mColumns + cellX(x);
+    }
+
+    public int cellX(float x) {
+        final int cx = (int) ((x - mMinX) * mInvCellSize);
+        return cx < 0 ? 0 : (cx >= mColumns ? mColumns - 1 : cx);
+    }
+
+    public int cellY(float y) {
+        final int cy = (int) ((y - mMinY) * mInvCellSize);
+        return cy < 0 ? 0 : (cy >= mRows ? mRows - 1 : cy);
+    }
+
+    /*
+     * Cell of particle i as of the last rebuild.
+     */
+    public int getCell(int i) {
+        return mCellOf[i];
+    }
+
+    public int[] getCellStart() {
+        return mCellStart;
+    }
+
+    public int[] getSortedIndices() {
+        return mSortedIndices;
+    }
+
+    public int getColumns() {
+        return mColumns;
+    }
+
+    public int getRows() {
+        return mRows;
+    }
+
+    public float getCellSize() {
+        return mCellSize;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+}
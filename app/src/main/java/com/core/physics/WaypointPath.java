@@ -0,0 +1,105 @@
+package com.core.physics;
+
+/**
+ * A closed loop of waypoints, in meters, that a {@link KinematicBody} travels
+ * at a constant speed in meters per second.
+ *
+ * Steering sets the body's velocity so it reaches each waypoint exactly and
+ * never overshoots, whatever the step length. Because both the path and the
+ * speed are in meters, the body moves the same physical distance per second
+ * on every screen.
+ */
+public class WaypointPath {
+    private final float[] mX;
+    private final float[] mY;
+    private final float mSpeed;
+    private int mTarget;
+
+    /*
+     * Waypoints are given as x0, y0, x1, y1, ...
+     */
+    public WaypointPath(float speed, float... waypoints) {
+        if (waypoints.length < 4 || waypoints.length % 2 != 0) {
+            throw new IllegalArgumentException("a path needs at least two x, y waypoints");
+        }
+        mSpeed = speed;
+        final int count = waypoints.length / 2;
+        mX = new float[count];
+        mY = new float[count];
+        for (int i = 0; i < count; i++) {
+            mX[i] = waypoints[2 * i];
+            mY[i] = waypoints[2 * i + 1];
+        }
+        reset();
+    }
+
+    /*
+     * A copy of this path, offset by (dx, dy), with its own progress.
+     */
+    public WaypointPath offset(float dx, float dy) {
+        final float[] waypoints = new float[mX.length * 2];
+        for (int i = 0; i < mX.length; i++) {
+            waypoints[2 * i] = mX[i] + dx;
+            waypoints[2 * i + 1] = mY[i] + dy;
+        }
+        return new WaypointPath(mSpeed, waypoints);
+    }
+
+    /*
+     * Heads for the second waypoint again, the body starts on the first.
+     */
+    public void reset() {
+        mTarget = 1 % mX.length;
+    }
+
+    /*
+     * Sets the body's velocity for the next dT seconds.
+     */
+    public void steer(KinematicBody body, float dT) {
+        if (dT <= 0) {
+            body.setVelocity(0, 0);
+            return;
+        }
+        float dx = mX[mTarget] - body.getPosX();
+        float dy = mY[mTarget] - body.getPosY();
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        final float reach = mSpeed * dT;
+        if (distance <= reach) {
+            // arrive exactly this step, then head for the next waypoint
+            mTarget = (mTarget + 1) % mX.length;
+            body.setVelocity(dx / dT, dy / dT);
+            return;
+        }
+        body.setVelocity(dx / distance * mSpeed, dy / distance * mSpeed);
+    }
+
+    /*
+     * Length of one lap around the loop, in meters.
+     */
+    public float getLength() {
+        float length = 0;
+        for (int i = 0; i < mX.length; i++) {
+            final int next = (i + 1) % mX.length;
+            final float dx = mX[next] - mX[i];
+            final float dy = mY[next] - mY[i];
+            length += (float) Math.sqrt(dx * dx + dy * dy);
+        }
+        return length;
+    }
+
+    public int getWaypointCount() {
+        return mX.length;
+    }
+
+    public float getX(int i) {
+        return mX[i];
+    }
+
+    public float getY(int i) {
+        return mY[i];
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+}
@@ -5,14 +5,34 @@ package com.core.score;
  */
 
 public class Score {
+    private long id;
     private int userId;
     private double value;
 
     public Score(int userId, double value) {
+        this(0, userId, value);
+    }
+
+    /*
+     * A score read back from the database, id is its row id.
+     */
+    public Score(long id, int userId, double value) {
+        this.id = id;
         this.userId = userId;
         this.value = value;
     }
 
+    /*
+     * Row id of a saved score, 0 for one that wasn't read from the database.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public int getUserId() {
         return userId;
     }
@@ -19,13 +19,12 @@ package com.example.android.accelerometerplay;
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory.Options;
 import android.graphics.Canvas;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.hardware.display.DisplayManager;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.media.SoundPool;
@@ -34,21 +33,36 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
-import android.util.AttributeSet;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.Display;
-import android.view.Surface;
-import android.view.View;
-import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
 
-import com.constants.Direction;
-import com.core.database.ScoreRepository;
+import com.core.database.Leaderboard;
+import com.core.database.ScoreWriteQueue;
+import com.core.game.GameWorld;
+import com.core.game.QualityGovernor;
+import com.core.input.InputRecorder;
+import com.core.input.RotationRemap;
+import com.core.input.SensorClock;
+import com.core.input.TiltInput;
+import com.core.metrics.FrameProfiler;
+import com.core.physics.FastRandom;
+import com.core.physics.FixedStepClock;
+import com.core.physics.FrameBuffer;
+import com.core.physics.FrameSnapshot;
+import com.core.physics.KinematicBody;
+import com.core.physics.ParticleEngine;
+import com.core.physics.SimulationLoop;
+import com.core.physics.WaypointPath;
 import com.core.score.Score;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 
 /**
  * This is an example of using the accelerometer to integrate the device's
@@ -63,6 +77,8 @@ import java.util.List;
  */
 
 public class AccelerometerPlayActivity extends Activity {
+    private static final String TAG = "AccelerometerPlay";
+
     private BackgroundSound mBackgroundSound = new BackgroundSound();
     private SimulationView mSimulationView;
     private SensorManager mSensorManager;
@@ -134,231 +150,126 @@ public class AccelerometerPlayActivity extends Activity {
     protected void onStop() {
         super.onStop();
         mBackgroundSound.cancel(true);
+
+        // the process may be killed any time from now on
+        mSimulationView.saveScores();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSimulationView.release();
     }
 
     public class SimulationView extends FrameLayout implements SensorEventListener {
         // diameter of the balls in meters
         private static final float sBallDiameter = 0.004f;
-        private static final float sBallDiameter2 = sBallDiameter * sBallDiameter;
+
+        // half the side of the square the cup travels around, in meters
+        private static final float sCupPathExtent = 0.018f;
+        // cup speed in meters per second
+        private static final float sCupSpeed = 0.01f;
+        // cups on the table, spread evenly along the path
+        private static final int sNumCups = 1;
+
+        // record all input to a file for InputPlayer, see startRecording()
+        private static final boolean RECORD_INPUT = false;
+        // time every phase of the loop, shown on screen and dumped to a file
+        // on pause, see dumpProfile()
+        private static final boolean PROFILE_FRAMES = false;
+        // carry the tilt forward to when a frame reaches the screen
+        private static final boolean EXTRAPOLATE_TILT = true;
+        // longest onStop waits for the queued scores to be written, far
+        // below the seconds the main thread may block before an ANR
+        private static final long SCORE_FLUSH_TIMEOUT_MS = 500;
 
         private final int mDstWidth;
         private final int mDstHeight;
+        private final int mCupWidth;
+        private final int mCupHeight;
 
         private Sensor mAccelerometer;
-        private long mLastT;
 
         private float mXDpi;
         private float mYDpi;
         private float mMetersToPixelsX;
         private float mMetersToPixelsY;
+
         private float mXOrigin;
         private float mYOrigin;
-        private float mSensorX;
-        private float mSensorY;
         private float mHorizontalBound;
         private float mVerticalBound;
-        private final ParticleSystem mParticleSystem;
-        private final CupHolder mCupHolder;
-        private Score mScore;
-
-        /*
-         * Each of our particle holds its previous and current position, its
-         * acceleration. for added realism each particle has its own friction
-         * coefficient.
-         */
-        class Particle extends View {
-            private float mPosX = (float) Math.random();
-            private float mPosY = (float) Math.random();
-            private float mVelX;
-            private float mVelY;
-
-            public Particle(Context context) {
-                super(context);
-            }
-
-            public Particle(Context context, AttributeSet attrs) {
-                super(context, attrs);
-            }
-
-            public Particle(Context context, AttributeSet attrs, int defStyleAttr) {
-                super(context, attrs, defStyleAttr);
-            }
-
-            @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-            public Particle(Context context, AttributeSet attrs, int defStyleAttr,
-                            int defStyleRes) {
-                super(context, attrs, defStyleAttr, defStyleRes);
-            }
 
-            public void computePhysics(float sx, float sy, float dT) {
+        // accelerometer samples, from the sensor callback to the simulation thread
+        private final TiltInput mTiltInput = new TiltInput();
+        // only rebuilt when the display rotates
+        private final RotationRemap mRotationRemap = new RotationRemap();
+        // sensor events are only delivered on the main thread
+        private final SensorClock mSensorClock = new SensorClock();
+        private RotationListener mRotationListener;
 
-                final float ax = -sx/5;
-                final float ay = -sy/5;
+        // seeds everything random in the simulation, so a recording can be replayed
+        private final long mSeed = System.nanoTime();
+        private final ParticleSystem mParticleSystem;
+        private final CupHolder[] mCupHolders;
+        private final KinematicBody[] mCupBodies;
+        private final FixedStepClock mClock = new FixedStepClock();
+        private final SimulationLoop mSimulationLoop;
+        // null while recording input, a replay has to step at a fixed rate
+        private final QualityGovernor mQualityGovernor;
+        private InputRecorder mInputRecorder;
+        private Score mScore;
 
-                mPosX += mVelX * dT + ax * dT * dT / 2;
-                mPosY += mVelY * dT + ay * dT * dT / 2;
+        // frames from the simulation thread to the UI thread
+        private final FrameBuffer mFrames = new FrameBuffer(ParticleSystem.POOL_CAPACITY,
+                sNumCups);
 
-                mVelX += ax * dT;
-                mVelY += ay * dT;
-            }
+        // draws all the balls, only touched on the UI thread
+        private final BallRenderer mBallRenderer;
 
-            /*
-             * Resolving constraints and collisions with the Verlet integrator
-             * can be very simple, we simply need to move a colliding or
-             * constrained particle in such way that the constraint is
-             * satisfied.
-             */
-            public void resolveCollisionWithBounds() {
-                final float xmax = mHorizontalBound;
-                final float ymax = mVerticalBound;
-                final float x = mPosX;
-                final float y = mPosY;
-                if (x > xmax) {
-                    mPosX = xmax;
-                    mVelX = 0;
-                } else if (x < -xmax) {
-                    mPosX = -xmax;
-                    mVelX = 0;
-                }
-                if (y > ymax) {
-                    mPosY = ymax;
-                    mVelY = 0;
-                } else if (y < -ymax) {
-                    mPosY = -ymax;
-                    mVelY = 0;
-                }
-            }
-        }
+        // both null unless PROFILE_FRAMES
+        private final FrameProfiler mProfiler;
+        private final ProfilerOverlay mProfilerOverlay;
 
         /*
-         * A particle system is just a collection of particles
+         * A particle system is just a collection of particles. Apart from the
+         * constructor, everything in here runs on the simulation thread.
          */
-        class ParticleSystem {
+        class ParticleSystem implements SimulationLoop.Callback, GameWorld.Listener,
+                QualityGovernor.Listener {
             private int NUM_PARTICLES = 3;
-            private List<Particle> mBallsList;
-            private Particle mBalls[];
+            // enough room that refilling the board never grows the pool
+            private static final int POOL_CAPACITY = 64;
+            private final ParticleEngine mEngine = new ParticleEngine(sBallDiameter,
+                    POOL_CAPACITY, new FastRandom(mSeed));
+            private final GameWorld mWorld = new GameWorld(mEngine, mCupBodies);
             private SoundPool sp = new SoundPool(10, AudioManager.STREAM_MUSIC, 0);
             private int soundIds[] = new int[10];
 
-            private ScoreRepository mScoreRepository = new ScoreRepository(getContext());
+            // writes the scores on its own thread, captures never wait for the
+            // disk, and through the leaderboard the main menu shows
+            private final ScoreWriteQueue mScoreQueue =
+                    Leaderboard.get(getContext()).getWriteQueue();
             private double mCurScore = 0.0;
-            private int mCurBalls = 5;
 
             ParticleSystem() {
-                mBallsList = new ArrayList<>();
-
                 /*
                  * Initially our particles have no speed or acceleration
                  */
                 for (int i = 0; i < NUM_PARTICLES; i++) {
-                    Particle p = getRandomParticle();
-
-                    mBallsList.add(p);
-
-                    /// i think this is where the view is initialized for each 'ball'
-                    addView(p, new ViewGroup.LayoutParams(mDstWidth, mDstHeight));
+                    mWorld.addBall();
                 }
 
-                soundIds[0] = sp.load(getContext(), R.raw.swallow, 1);
-
-                Score user = mScoreRepository.getById(1);
-                if (user != null) {
-                    System.out.println("Score ID User: " + user.getUserId() + " Score: " +
-                            user.getValue());
-                }
-            }
-
-            public Particle getRandomParticle() {
-                Particle p = new Particle(getContext());
-                p.setBackgroundResource(R.drawable.ball);
-                p.setLayerType(LAYER_TYPE_HARDWARE, null);
-                return p;
-            }
-
-            public void removeBall(Particle p) {
-                removeView(p);
-                mBallsList.remove(p);
-            }
-
-            public void addBall(Particle p) {
-                mBallsList.add(p);
-
-                addView(p, new ViewGroup.LayoutParams(mDstWidth, mDstHeight));
-            }
-
-            /*
-             * Update the position of each particle in the system using the
-             * Verlet integrator.
-             */
-            private void updatePositions(float sx, float sy, long timestamp) {
-                final long t = timestamp;
-                if (mLastT != 0) {
-                    final float dT = (float) (t - mLastT) / 1000.f /** (1.0f / 1000000000.0f)*/;
-                        final int count = mBallsList.size();
-                        for (int i = 0; i < count; i++) {
-                            Particle ball = mBallsList.get(i);
-                            ball.computePhysics(sx, sy, dT);
-                        }
-                }
-                mLastT = t;
-            }
-
-            /*
-             * Performs one iteration of the simulation. First updating the
-             * position of all the particles and resolving the constraints and
-             * collisions.
-             */
-            public void update(float sx, float sy, long now) {
-                // update the system's positions
-                updatePositions(sx, sy, now);
-
-                // We do no more than a limited number of iterations
-                final int NUM_MAX_ITERATIONS = 10;
-
                 /*
-                 * Resolve collisions, each particle is tested against every
-                 * other particle for collision. If a collision is detected the
-                 * particle is moved away using a virtual spring of infinite
-                 * stiffness.
+                 * Stop the collision passes once all overlaps add up to less
+                 * than 2.5% of a ball's size, well below a pixel, and start
+                 * every step from the last step's contacts.
                  */
-                boolean more = true;
-                final int count = mBallsList.size();
-                for (int k = 0; k < NUM_MAX_ITERATIONS && more; k++) {
-                    more = false;
-                    for (int i = 0; i < count; i++) {
-                        Particle curr = mBallsList.get(i);
-                        for (int j = i + 1; j < count; j++) {
-                            Particle ball = mBallsList.get(j);
-                            float dx = ball.mPosX - curr.mPosX;
-                            float dy = ball.mPosY - curr.mPosY;
-                            float dd = dx * dx + dy * dy;
-                            // Check for collisions
-                            if (dd <= sBallDiameter2) {
-                                /*
-                                 * add a little bit of entropy, after nothing is
-                                 * perfect in the universe.
-                                 */
-                                dx += ((float) Math.random() - 0.5f) * 0.0001f;
-                                dy += ((float) Math.random() - 0.5f) * 0.0001f;
-                                dd = dx * dx + dy * dy;
-                                // simulate the spring
-                                final float d = (float) Math.sqrt(dd);
-                                final float c = (0.5f * (sBallDiameter - d)) / d;
-                                final float effectX = dx * c;
-                                final float effectY = dy * c;
-                                curr.mPosX -= effectX;
-                                curr.mPosY -= effectY;
-                                ball.mPosX += effectX;
-                                ball.mPosY += effectY;
-                                more = true;
-                            }
-                        }
-                        curr.resolveCollisionWithBounds();
-                    }
-                }
-            }
-
-            public void detectCollisions(float x, int xHeight, float y, int yHeight) {
+                mEngine.setPenetrationTolerance(sBallDiameter * 0.025f);
+                mEngine.setWarmStarting(true);
+                // the quality governor may drop to 30 Hz, keep fast balls from
+                // skipping over the cup or through each other
+                mEngine.setContinuousCollision(true);
 
 //                AudioAttributes attrs = new AudioAttributes.Builder()
 //                        .setUsage(AudioAttributes.USAGE_GAME)
@@ -368,53 +279,98 @@ public class AccelerometerPlayActivity extends Activity {
 //                        .setMaxStreams(10)
 //                        .setAudioAttributes(attrs)
 //                        .build();
+                soundIds[0] = sp.load(getContext(), R.raw.swallow, 1);
 
-                for (int i = 0; i < this.mBallsList.size(); i++) {
-                    Particle curBall = this.mBallsList.get(i);
-
-                    if (x > curBall.getX() && x < curBall.getX() + xHeight &&
-                            y > curBall.getY() && y < curBall.getY() + yHeight) {
-
-                        if (this.mBallsList.size() == 1) {
-                            if (mCurBalls < 15) {
-                                mCurBalls = (int) (mCurBalls * 1.2);
-                            }
+                mWorld.setListener(this);
+                // before the simulation thread starts, so it sees the profiler
+                mWorld.setProfiler(mProfiler);
+            }
 
-                            for (int j = 0; j < mCurBalls; j++) {
-                                addBall(mParticleSystem.getRandomParticle());
-                            }
+            @Override
+            public void onBounds(float horizontalBound, float verticalBound) {
+                mEngine.setBounds(horizontalBound, verticalBound);
+            }
 
-                            continue;
-                        }
+            /*
+             * Performs one fixed step of the game, see GameWorld. All of it
+             * is in meters, so it plays the same on every screen.
+             */
+            @Override
+            public void onStep(float sx, float sy, float dT) {
+                final QualityGovernor governor = mQualityGovernor;
+                if (governor == null) {
+                    mWorld.step(sx, sy, dT);
+                    return;
+                }
+                final long start = System.nanoTime();
+                mWorld.step(sx, sy, dT);
+                governor.recordSteps(System.nanoTime() - start);
+            }
 
-                        sp.play(soundIds[0], 1, 1, 1, 0, 1.0f);
-                        removeBall(curBall);
-                        i--;
+            /*
+             * Publishes the state of the last step and asks the UI thread to
+             * draw it.
+             */
+            @Override
+            public void onFrame(long stepTimeNanos, long stepNanos, long inputNanos) {
+                final FrameProfiler profiler = mProfiler;
+                if (profiler != null) {
+                    profiler.begin(FrameProfiler.PHASE_PUBLISH);
+                }
 
-                        // increment pts
-                        mCurScore+= 0.5;
-                        mScore = new Score(1, mCurScore);
+                mFrames.publish(mEngine, mCupBodies, stepTimeNanos, stepNanos, inputNanos);
+                postInvalidate();
 
-                        // save mScore
-                        System.out.println("Collision: " + mScore);
-                        mScoreRepository.add(mScore);
+                if (profiler != null) {
+                    profiler.end(FrameProfiler.PHASE_PUBLISH);
+                }
 
-                        // re-render
+                if (mQualityGovernor != null) {
+                    mQualityGovernor.onFrame(System.nanoTime());
+                }
+            }
 
-                    }
+            @Override
+            public void onQualityChanged(int level) {
+                if (EXTRAPOLATE_TILT) {
+                    // the step length changes with the level
+                    mTiltInput.setExtrapolation(true, mClock.getStepNanos());
+                }
+                if (PROFILE_FRAMES) {
+                    Log.d(TAG, "Quality level " + level + ": "
+                            + QualityGovernor.getStepHz(level) + " Hz, "
+                            + QualityGovernor.getMaxIterations(level) + " iterations");
                 }
             }
 
-            public int getParticleCount() {
-                return mBallsList.size();
+            /*
+             * A cup swallowed a ball.
+             */
+            @Override
+            public void onCapture(int index) {
+                sp.play(soundIds[0], 1, 1, 1, 0, 1.0f);
+
+                // increment pts
+                mCurScore+= 0.5;
+                mScore = new Score(1, mCurScore);
+
+                // save mScore
+                System.out.println("Collision: " + mScore);
+                if (mProfiler != null) {
+                    mProfiler.begin(FrameProfiler.PHASE_SCORE);
+                }
+                mScoreQueue.add(mScore);
+                if (mProfiler != null) {
+                    mProfiler.end(FrameProfiler.PHASE_SCORE);
+                }
             }
 
-            public float getPosX(int i) {
-                return mBallsList.get(i).mPosX;
+            public int getParticleCount() {
+                return mEngine.getParticleCount();
             }
 
-            public float getPosY(int i) {
-                return mBallsList.get(i).mPosY;
+            public ParticleEngine getEngine() {
+                return mEngine;
             }
         }
 
@@ -426,11 +382,102 @@ public class AccelerometerPlayActivity extends Activity {
              * of the acceleration. As an added benefit, we use less power and
              * CPU resources.
              */
+            mRotationRemap.setRotation(mDisplay.getRotation());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                if (mRotationListener == null) {
+                    mRotationListener = new RotationListener();
+                }
+                mRotationListener.register();
+            }
+            mSensorClock.reset();
             mSensorManager.registerListener(this, mAccelerometer, SensorManager.SENSOR_DELAY_GAME);
+
+            mSimulationLoop.start();
         }
 
         public void stopSimulation() {
             mSensorManager.unregisterListener(this);
+            if (mRotationListener != null) {
+                mRotationListener.unregister();
+            }
+
+            // waits for the simulation thread to finish its current step
+            mSimulationLoop.stop();
+
+            // start writing, onStop waits for it
+            mParticleSystem.mScoreQueue.flush();
+
+            if (mQualityGovernor != null) {
+                mQualityGovernor.reset();
+            }
+            if (mProfiler != null) {
+                dumpProfile();
+            }
+        }
+
+        /*
+         * Waits for the queued scores to be written, at most
+         * SCORE_FLUSH_TIMEOUT_MS, whatever is left is written after that.
+         */
+        public void saveScores() {
+            mParticleSystem.mScoreQueue.flushAndWait(SCORE_FLUSH_TIMEOUT_MS);
+        }
+
+        /*
+         * Writes the timings since the last dump to a file and starts over,
+         * so every file covers one session between onResume and onPause.
+         * Only called with the simulation stopped.
+         */
+        private void dumpProfile() {
+            File file = new File(getExternalFilesDir(null),
+                    "frames-" + System.currentTimeMillis() + ".tsv");
+            try {
+                FileWriter writer = new FileWriter(file);
+                try {
+                    mProfiler.dump(writer);
+                } finally {
+                    writer.close();
+                }
+                Log.i(TAG, "Frame timings written to " + file);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot write frame timings to " + file, e);
+            }
+            mProfiler.reset();
+        }
+
+        /*
+         * Records the session from the start, so InputPlayer can replay it
+         * into a simulation seeded with mSeed.
+         */
+        private void startRecording() {
+            File file = new File(getExternalFilesDir(null),
+                    "input-" + System.currentTimeMillis() + ".rec");
+            try {
+                mInputRecorder = new InputRecorder(new FileOutputStream(file), mSeed, mClock,
+                        mParticleSystem.getEngine());
+                mSimulationLoop.setRecorder(mInputRecorder);
+                Log.i(TAG, "Recording input to " + file);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot record input to " + file, e);
+            }
+        }
+
+        /*
+         * Called once the activity is destroyed and the simulation stopped.
+         */
+        public void release() {
+            if (mInputRecorder != null) {
+                mSimulationLoop.setRecorder(null);
+                if (mInputRecorder.checkError()) {
+                    Log.w(TAG, "Input recording is incomplete");
+                }
+                try {
+                    mInputRecorder.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot close input recording", e);
+                }
+                mInputRecorder = null;
+            }
         }
 
         public SimulationView(Context context) {
@@ -447,12 +494,46 @@ public class AccelerometerPlayActivity extends Activity {
             // rescale the ball so it's about 0.5 cm on screen
             mDstWidth = (int) (sBallDiameter * mMetersToPixelsX + 0.5f);
             mDstHeight = (int) (sBallDiameter * mMetersToPixelsY + 0.5f);
+
+            if (PROFILE_FRAMES) {
+                mProfiler = new FrameProfiler();
+                mProfilerOverlay = new ProfilerOverlay(mProfiler, 12 * metrics.density);
+            } else {
+                mProfiler = null;
+                mProfilerOverlay = null;
+            }
+
+            // the cup goes down, right, up and left around the center of the table
+            mCupWidth = (int) (Cup.SIZE * mMetersToPixelsX + 0.5f);
+            mCupHeight = (int) (Cup.SIZE * mMetersToPixelsY + 0.5f);
+            final float e = sCupPathExtent;
+            final WaypointPath cupPath = new WaypointPath(sCupSpeed, -e, e, -e, -e, e, -e, e, e);
+            mCupHolders = new CupHolder[sNumCups];
+            mCupBodies = new KinematicBody[sNumCups];
+            for (int i = 0; i < sNumCups; i++) {
+                mCupHolders[i] = new CupHolder(this, getContext(), cupPath.offset(0, 0),
+                        mCupWidth, mCupHeight);
+                mCupBodies[i] = mCupHolders[i].getCup().getBody();
+            }
+            GameWorld.spreadAlongPath(mCupBodies, 1.0f / FixedStepClock.DEFAULT_STEP_HZ);
+
             mParticleSystem = new ParticleSystem();
-            mCupHolder = new CupHolder(this, getContext());
+            if (EXTRAPOLATE_TILT) {
+                // a frame is computed right after its step and shown at the next vsync
+                mTiltInput.setExtrapolation(true, mClock.getStepNanos());
+            }
+            mSimulationLoop = new SimulationLoop(mClock, mTiltInput, mParticleSystem);
+            if (RECORD_INPUT) {
+                startRecording();
+                mQualityGovernor = null;
+            } else {
+                mQualityGovernor = new QualityGovernor(mClock, mParticleSystem.getEngine());
+                mQualityGovernor.setListener(mParticleSystem);
+            }
+            mBallRenderer = new BallRenderer(getResources(), mDstWidth, mDstHeight);
 
-            Options opts = new Options();
-            opts.inDither = true;
-            opts.inPreferredConfig = Bitmap.Config.RGB_565;
+            // the balls are drawn in onDraw rather than as child views
+            setWillNotDraw(false);
         }
 
         @Override
@@ -463,6 +544,43 @@ public class AccelerometerPlayActivity extends Activity {
             mYOrigin = (h - mDstHeight) * 0.5f;
             mHorizontalBound = ((w / mMetersToPixelsX - sBallDiameter) * 0.5f);
             mVerticalBound = ((h / mMetersToPixelsY - sBallDiameter) * 0.5f);
+            mSimulationLoop.setBounds(mHorizontalBound, mVerticalBound);
+
+            // a rotation always changes our size on devices without DisplayManager
+            mRotationRemap.setRotation(mDisplay.getRotation());
+        }
+
+        /*
+         * Keeps the cached rotation up to date, including 180 degree turns
+         * that don't change our size.
+         */
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+        private class RotationListener implements DisplayManager.DisplayListener {
+            private final DisplayManager mDisplayManager =
+                    (DisplayManager) getSystemService(DISPLAY_SERVICE);
+
+            void register() {
+                mDisplayManager.registerDisplayListener(this, null);
+            }
+
+            void unregister() {
+                mDisplayManager.unregisterDisplayListener(this);
+            }
+
+            @Override
+            public void onDisplayChanged(int displayId) {
+                if (displayId == mDisplay.getDisplayId()) {
+                    mRotationRemap.setRotation(mDisplay.getRotation());
+                }
+            }
+
+            @Override
+            public void onDisplayAdded(int displayId) {
+            }
+
+            @Override
+            public void onDisplayRemoved(int displayId) {
+            }
         }
 
         @Override
@@ -478,108 +596,71 @@ public class AccelerometerPlayActivity extends Activity {
              * to with the screen in its native orientation).
              */
 
-            switch (mDisplay.getRotation()) {
-                case Surface.ROTATION_0:
-                    mSensorX = event.values[0];
-                    mSensorY = event.values[1];
-                    break;
-                case Surface.ROTATION_90:
-                    mSensorX = -event.values[1];
-                    mSensorY = event.values[0];
-                    break;
-                case Surface.ROTATION_180:
-                    mSensorX = -event.values[0];
-                    mSensorY = -event.values[1];
-                    break;
-                case Surface.ROTATION_270:
-                    mSensorX = event.values[1];
-                    mSensorY = -event.values[0];
-                    break;
+            final float x = event.values[0];
+            final float y = event.values[1];
+            mTiltInput.offer(mSensorClock.toNanoTime(event.timestamp, System.nanoTime(),
+                            elapsedRealtimeNanos()),
+                    mRotationRemap.remapX(x, y), mRotationRemap.remapY(x, y));
+        }
+
+        /*
+         * Before elapsedRealtimeNanos() the millisecond clock is all there
+         * is, which is close enough to tell the two sensor clocks apart.
+         */
+        private long elapsedRealtimeNanos() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                return SystemClock.elapsedRealtimeNanos();
             }
+            return SystemClock.elapsedRealtime() * 1000000L;
         }
 
         @Override
         protected void onDraw(Canvas canvas) {
             /*
-             * Compute the new position of our object, based on accelerometer
-             * data and present time.
+             * The simulation thread does all the work; here we only draw the
+             * latest frame it published.
              */
-            final ParticleSystem particleSystem = mParticleSystem;
-            final long now = System.currentTimeMillis();
-            final float sx = mSensorX;
-            final float sy = mSensorY;
-
-            // updates
-            particleSystem.update(sx, sy, now);
-            particleSystem.detectCollisions(mCupHolder.getCup().getX(), mCupHolder.getCup().getWidth(),
-                    mCupHolder.getCup().getY(),
-                    mCupHolder.getCup().getHeight());
-
-            final float xc = mXOrigin;
-            final float yc = mYOrigin;
-            final float xs = mMetersToPixelsX;
-            final float ys = mMetersToPixelsY;
-            final int count = particleSystem.getParticleCount();
-            for (int i = 0; i < count; i++) {
-                /*
-                 * We transform the canvas so that the coordinate system matches
-                 * the sensors coordinate system with the origin in the center
-                 * of the screen and the unit is the meter.
-                 */
-                try {
-                    final float x = xc + particleSystem.getPosX(i) * xs;
-                    final float y = yc - particleSystem.getPosY(i) * ys;
-                    particleSystem.mBallsList.get(i).setTranslationX(x);
-                    particleSystem.mBallsList.get(i).setTranslationY(y);
-
-                    // random ball test
-//                    if (x < 300 && y > 1600 && particleSystem.getParticleCount() < 10) {
-//                        particleSystem.addBall(particleSystem.getRandomParticle());
-//                    }
-//                    if (x > 700 && y > 1600 && particleSystem.getParticleCount() > 3) {
-//                        particleSystem.removeBall(particleSystem.mBallsList.get(0));
-//                    }
-
-                    // also update the cupHolder
-                    float cupX = mCupHolder.getCup().getX();
-                    float cupY = mCupHolder.getCup().getY();
-                    float newX;
-
-                    if (cupX > 750 && cupY < 150) {
-                        mCupHolder.setDirection(Direction.LEFT);
-                    } else if(cupX < 150 && cupY < 150) {
-                        mCupHolder.setDirection(Direction.DOWN);
-                    } else if (cupX < 150 && cupY > 750) {
-                        mCupHolder.setDirection(Direction.RIGHT);
-                    } else if (cupX > 750 && cupY > 750) {
-                        mCupHolder.setDirection(Direction.UP);
-                    }
-
-                    float changeX = 0.0f;
-                    float changeY = 0.0f;
-                    switch(mCupHolder.getDirection()) {
-                        case RIGHT:
-                            changeX = 0.5f;
-                            break;
-                        case LEFT:
-                            changeX = -0.5f;
-                            break;
-                        case UP:
-                            changeY = -0.5f;
-                            break;
-                        case DOWN:
-                            changeY = 0.5f;
-                            break;
-                    }
-
-                    mCupHolder.getCup().setTranslationX(cupX + changeX);
-                    mCupHolder.getCup().setTranslationY(cupY + changeY);
-                } catch(Exception e) {}
+            final FrameSnapshot frame = mFrames.acquire();
+            if (frame == null) {
+                return;
             }
 
+            final FrameProfiler profiler = mProfiler;
+            if (profiler != null) {
+                profiler.begin(FrameProfiler.PHASE_DRAW);
+            }
+            final QualityGovernor governor = mQualityGovernor;
+            final long drawStart = System.nanoTime();
+
+            /*
+             * We transform the coordinates so that the coordinate system
+             * matches the sensors coordinate system with the origin in the
+             * center of the screen and the unit is the meter.
+             */
+            final float alpha = frame.getAlpha(System.nanoTime());
+            mBallRenderer.draw(canvas, frame, alpha, mXOrigin, mYOrigin,
+                    mMetersToPixelsX, mMetersToPixelsY);
+
+            // also update the cups, frame has the center of each cup
+            final float cupXOrigin = mXOrigin + (mDstWidth - mCupWidth) * 0.5f;
+            final float cupYOrigin = mYOrigin + (mDstHeight - mCupHeight) * 0.5f;
+            for (int i = 0; i < frame.getCupCount(); i++) {
+                final Cup cup = mCupHolders[i].getCup();
+                cup.setTranslationX(cupXOrigin + frame.getCupX(i) * mMetersToPixelsX);
+                cup.setTranslationY(cupYOrigin - frame.getCupY(i) * mMetersToPixelsY);
+            }
 
-            // and make sure to redraw asap
-            invalidate();
+            if (governor != null) {
+                governor.recordDraw(System.nanoTime() - drawStart);
+            }
+
+            if (profiler != null) {
+                profiler.end(FrameProfiler.PHASE_DRAW);
+                if (frame.getInputNanos() != 0) {
+                    profiler.recordInputLatency(System.nanoTime() - frame.getInputNanos());
+                }
+                mProfilerOverlay.draw(canvas);
+            }
         }
 
         @Override
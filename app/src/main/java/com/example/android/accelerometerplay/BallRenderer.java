@@ -0,0 +1,51 @@
+package com.example.android.accelerometerplay;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.core.physics.FrameSnapshot;
+
+/**
+ * Draws every ball of a frame in a single pass over the canvas.
+ *
+ * The ball bitmap is decoded and scaled to its on-screen size once, so a
+ * frame costs one drawBitmap per ball instead of one view, one layer and two
+ * property updates per ball.
+ */
+public class BallRenderer {
+    private final Bitmap mBall;
+    private final Paint mPaint;
+
+    public BallRenderer(Resources resources, int dstWidth, int dstHeight) {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inDither = true;
+        // the ball needs its alpha channel, so no RGB_565 here
+        opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap ball = BitmapFactory.decodeResource(resources, R.drawable.ball, opts);
+        mBall = Bitmap.createScaledBitmap(ball, dstWidth, dstHeight, true);
+        if (mBall != ball) {
+            ball.recycle();
+        }
+
+        mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    /*
+     * The transform maps meters to pixels with the origin in the center of
+     * the screen and y pointing up, like the sensors' coordinate system.
+     */
+    public void draw(Canvas canvas, FrameSnapshot frame, float alpha,
+                     float xOrigin, float yOrigin, float metersToPixelsX, float metersToPixelsY) {
+        final Bitmap ball = mBall;
+        final Paint paint = mPaint;
+        final int count = frame.getCount();
+        for (int i = 0; i < count; i++) {
+            final float x = xOrigin + frame.getInterpolatedPosX(i, alpha) * metersToPixelsX;
+            final float y = yOrigin - frame.getInterpolatedPosY(i, alpha) * metersToPixelsY;
+            canvas.drawBitmap(ball, x, y, paint);
+        }
+    }
+}
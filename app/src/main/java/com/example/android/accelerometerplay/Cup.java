@@ -6,15 +6,17 @@ import android.os.Build;
 import android.util.AttributeSet;
 import android.view.View;
 
+import com.core.physics.KinematicBody;
+
 /**
  * Created by GWM on 6/1/17.
  */
 
 public class Cup extends View {
-    private float mPosX = (float) Math.random();
-    private float mPosY = (float) Math.random();
-    private float mVelX;
-    private float mVelY;
+    // size of the cup in meters
+    public static final float SIZE = 0.008f;
+
+    private final KinematicBody mBody = new KinematicBody(SIZE, SIZE);
 
     public Cup(Context context) {
         super(context);
@@ -34,31 +36,11 @@ public class Cup extends View {
         super(context, attrs, defStyleAttr, defStyleRes);
     }
 
-    public void computePhysics(float sx, float sy, float dT) {
-
-        final float ax = -sx/5;
-        final float ay = -sy/5;
-
-        mPosX += mVelX * dT + ax * dT * dT / 2;
-        mPosY += mVelY * dT + ay * dT * dT / 2;
-
-        mVelX += ax * dT;
-        mVelY += ay * dT;
-    }
-
     /*
-     * Resolving constraints and collisions with the Verlet integrator
-     * can be very simple, we simply need to move a colliding or
-     * constrained particle in such way that the constraint is
-     * satisfied.
+     * The body GameWorld moves along the path and captures balls with, the
+     * view only shows where it is.
      */
-    public boolean hasCollision(int otherX, int xWidth, int otherY, int yHeight) {
-        final float x = mPosX;
-        final float y = mPosY;
-
-        return  x > otherX &&
-                x < otherX + xWidth &&
-                y > otherY &&
-                y < otherY + yHeight;
+    public KinematicBody getBody() {
+        return mBody;
     }
-}
\ No newline at end of file
+}
@@ -5,7 +5,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
-import com.constants.Direction;
+import com.core.physics.WaypointPath;
 
 /**
  * Created by GWM on 6/1/17.
@@ -13,33 +13,23 @@ import com.constants.Direction;
 
 public class CupHolder {
     private Cup cup;
-    private Direction curDirection;
 
 
-    public CupHolder(FrameLayout frame, Context context) {
+    /*
+     * The cup is sized in meters, widthPixels and heightPixels are that size
+     * on this screen.
+     */
+    public CupHolder(FrameLayout frame, Context context, WaypointPath path,
+                     int widthPixels, int heightPixels) {
         cup = new Cup(context);
         cup.setBackgroundResource(R.drawable.duck);
         cup.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+        cup.getBody().setPath(path);
 
-        frame.addView(cup, new ViewGroup.LayoutParams(120, 120));
+        frame.addView(cup, new ViewGroup.LayoutParams(widthPixels, heightPixels));
     }
 
     public Cup getCup() {
         return cup;
     }
-
-    public void setDirection(Direction newDirection) {
-        curDirection = newDirection;
-    }
-
-    public Direction getDirection() {
-        return this.curDirection;
-    }
-
-    // how to position this?
-
-    // how to determine collision and remove balls on collision
-    public boolean hasCollision(int x, int y, int width, int height) {
-        return this.cup.hasCollision(x, width, y, height);
-    }
-}
\ No newline at end of file
+}
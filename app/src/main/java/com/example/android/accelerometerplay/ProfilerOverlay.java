@@ -0,0 +1,56 @@
+package com.example.android.accelerometerplay;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.core.metrics.FrameProfiler;
+import com.core.metrics.LatencyHistogram;
+
+/**
+ * Draws the p50/p95/p99/max of every phase of a FrameProfiler in the top
+ * left corner, one line per phase.
+ *
+ * The text is built in a reused StringBuilder, so drawing the overlay does
+ * not allocate and does not add jank of its own.
+ */
+public class ProfilerOverlay {
+    private final FrameProfiler mProfiler;
+    private final Paint mPaint;
+    private final StringBuilder mLine = new StringBuilder(64);
+
+    public ProfilerOverlay(FrameProfiler profiler, float textSize) {
+        mProfiler = profiler;
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setColor(Color.WHITE);
+        mPaint.setTextSize(textSize);
+    }
+
+    public void draw(Canvas canvas) {
+        final FrameProfiler profiler = mProfiler;
+        final Paint paint = mPaint;
+        final StringBuilder line = mLine;
+        final float lineHeight = paint.getTextSize() * 1.2f;
+        float y = lineHeight;
+        for (int phase = 0; phase < FrameProfiler.PHASE_COUNT; phase++) {
+            line.setLength(0);
+            profiler.appendSummary(phase, line);
+            canvas.drawText(line, 0, line.length(), lineHeight * 0.5f, y, paint);
+            y += lineHeight;
+        }
+
+        line.setLength(0);
+        line.append("iterations ").append(profiler.getIterations().getPercentile(0.50))
+                .append('/').append(profiler.getIterations().getPercentile(0.99))
+                .append('/').append(profiler.getIterations().getMax());
+        canvas.drawText(line, 0, line.length(), lineHeight * 0.5f, y, paint);
+        y += lineHeight;
+
+        final LatencyHistogram input = profiler.getInputLatency();
+        line.setLength(0);
+        line.append("input ").append(input.getPercentile(0.50) / 1000000)
+                .append('/').append(input.getPercentile(0.99) / 1000000)
+                .append('/').append(input.getMax() / 1000000).append("ms");
+        canvas.drawText(line, 0, line.length(), lineHeight * 0.5f, y, paint);
+    }
+}
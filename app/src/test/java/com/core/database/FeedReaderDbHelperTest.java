@@ -0,0 +1,122 @@
+package com.core.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens databases left behind by other versions of the app and checks what
+ * the helper keeps of them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23, manifest = Config.NONE)
+public class FeedReaderDbHelperTest {
+    private Context mContext;
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = mContext.getDatabasePath(FeedReaderDbHelper.DATABASE_NAME);
+        mFile.getParentFile().mkdirs();
+        mFile.delete();
+    }
+
+    @Test
+    public void upgradeCopiesVersion1Rows() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(mFile, null);
+        db.execSQL("CREATE TABLE scores (_id INTEGER PRIMARY KEY, userid TEXT, score TEXT)");
+        db.execSQL("INSERT INTO scores (_id, userid, score) VALUES (1, '1', '2.5')");
+        db.execSQL("INSERT INTO scores (_id, userid, score) VALUES (2, NULL, '4.0')");
+        db.execSQL("INSERT INTO scores (_id, userid, score) VALUES (3, '2', NULL)");
+        db.execSQL("INSERT INTO scores (_id, userid, score) VALUES (4, '2', '7')");
+        db.setVersion(1);
+        db.close();
+
+        db = new FeedReaderDbHelper(mContext).getWritableDatabase();
+        assertEquals(FeedReaderDbHelper.DATABASE_VERSION, db.getVersion());
+        Cursor cursor = db.rawQuery("SELECT _id, typeof(userid), userid, typeof(score), score,"
+                + " timestamp FROM scores ORDER BY _id", null);
+        try {
+            // the rows without a user or a score can't be kept
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertRow(cursor, 1, 1, 2.5, 0);
+            assertTrue(cursor.moveToNext());
+            assertRow(cursor, 4, 2, 7, 0);
+        } finally {
+            cursor.close();
+            db.close();
+        }
+    }
+
+    @Test
+    public void downgradeKeepsScores() {
+        SQLiteDatabase db = new FeedReaderDbHelper(mContext).getWritableDatabase();
+        db.execSQL("INSERT INTO scores (_id, userid, score, timestamp) VALUES (1, 1, 2.5, 100)");
+        db.execSQL("INSERT INTO scores (_id, userid, score, timestamp) VALUES (2, 2, 3.5, 200)");
+        // a newer version added a column and an index
+        db.execSQL("ALTER TABLE scores ADD COLUMN level INTEGER");
+        db.execSQL("CREATE INDEX scores_level ON scores (level)");
+        db.setVersion(FeedReaderDbHelper.DATABASE_VERSION + 1);
+        db.close();
+
+        db = new FeedReaderDbHelper(mContext).getWritableDatabase();
+        assertEquals(FeedReaderDbHelper.DATABASE_VERSION, db.getVersion());
+        Cursor cursor = db.rawQuery("SELECT _id, typeof(userid), userid, typeof(score), score,"
+                + " timestamp FROM scores ORDER BY _id", null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertRow(cursor, 1, 1, 2.5, 100);
+            assertTrue(cursor.moveToNext());
+            assertRow(cursor, 2, 2, 3.5, 200);
+            assertEquals(-1, cursor.getColumnIndex("level"));
+        } finally {
+            cursor.close();
+            db.close();
+        }
+    }
+
+    @Test
+    public void downgradeWithoutOurColumnsStartsOver() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(mFile, null);
+        db.execSQL("CREATE TABLE scores (_id INTEGER PRIMARY KEY, player TEXT, points REAL)");
+        db.execSQL("INSERT INTO scores (player, points) VALUES ('a', 1)");
+        db.setVersion(FeedReaderDbHelper.DATABASE_VERSION + 1);
+        db.close();
+
+        db = new FeedReaderDbHelper(mContext).getWritableDatabase();
+        assertEquals(FeedReaderDbHelper.DATABASE_VERSION, db.getVersion());
+        Cursor cursor = db.rawQuery("SELECT * FROM scores", null);
+        try {
+            assertFalse(cursor.moveToNext());
+            assertTrue(cursor.getColumnIndex("timestamp") >= 0);
+        } finally {
+            cursor.close();
+            db.close();
+        }
+    }
+
+    private static void assertRow(Cursor cursor, long id, int userId, double score, long timestamp) {
+        assertEquals(id, cursor.getLong(0));
+        assertEquals("integer", cursor.getString(1));
+        assertEquals(userId, cursor.getInt(2));
+        assertEquals("real", cursor.getString(3));
+        assertEquals(score, cursor.getDouble(4), 0);
+        assertEquals(timestamp, cursor.getLong(5));
+    }
+}
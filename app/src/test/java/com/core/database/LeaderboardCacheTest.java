@@ -0,0 +1,253 @@
+package com.core.database;
+
+import android.content.Context;
+
+import com.core.score.Score;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * LeaderboardCache in front of a real ScoreRepository. Scores written
+ * straight to the repository show what the cache answers from memory.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23, manifest = Config.NONE)
+public class LeaderboardCacheTest {
+    private Context mContext;
+    private HookedRepository mRepository;
+    private FeedReaderDbHelper mCheck;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mContext.deleteDatabase(FeedReaderDbHelper.DATABASE_NAME);
+        mRepository = new HookedRepository(mContext);
+        mCheck = new FeedReaderDbHelper(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mCheck.close();
+    }
+
+    @Test
+    public void writesGoThroughToTheTop() {
+        final LeaderboardCache cache = new LeaderboardCache(mRepository, 3, 64);
+        cache.load();
+        assertTrue(cache.isLoaded());
+        assertTrue(cache.getTop().isEmpty());
+
+        final Score first = new Score(1, 5);
+        cache.add(first);
+        assertTrue(first.getId() > 0);
+        assertIds(cache.getTop(), first);
+
+        final List<Score> more = Arrays.asList(new Score(2, 9), new Score(3, 1), new Score(1, 7));
+        cache.addAll(more);
+        for (Score score : more) {
+            assertTrue(score.getId() > 0);
+        }
+        assertIds(cache.getTop(), more.get(0), more.get(2), first);
+
+        // a tie goes before the older score, one too low stays out
+        final Score tie = new Score(4, 7);
+        cache.add(tie);
+        cache.add(new Score(5, 2));
+        assertIds(cache.getTop(), more.get(0), tie, more.get(2));
+        assertIds(mRepository.top(3), more.get(0), tie, more.get(2));
+
+        // the top list is never read back
+        mRepository.add(new Score(6, 100));
+        assertIds(cache.getTop(), more.get(0), tie, more.get(2));
+    }
+
+    @Test
+    public void writesUpdateACachedBest() {
+        final LeaderboardCache cache = new LeaderboardCache(mRepository);
+        mRepository.add(new Score(1, 5));
+        assertEquals(5, cache.getById(1).getValue(), 0);
+
+        final Score better = new Score(1, 8);
+        cache.add(better);
+        cache.add(new Score(1, 6));
+        assertEquals(better.getId(), cache.peekBest(1).getId());
+
+        // a user first seen on a write isn't cached, the database may know better
+        cache.add(new Score(2, 1));
+        assertFalse(cache.isBestCached(2));
+    }
+
+    @Test
+    public void leastRecentlyUsedBestIsEvicted() {
+        final LeaderboardCache cache = new LeaderboardCache(mRepository, 10, 2);
+        mRepository.addAll(Arrays.asList(new Score(1, 1), new Score(2, 2), new Score(3, 3)));
+
+        cache.getById(1);
+        cache.getById(2);
+        // 2 is now the least recently used
+        cache.getById(1);
+        assertEquals(0, cache.getEvictionCount());
+
+        assertEquals(3, cache.getById(3).getValue(), 0);
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.isBestCached(1));
+        assertFalse(cache.isBestCached(2));
+        assertTrue(cache.isBestCached(3));
+
+        // a user without scores takes a place too
+        assertNull(cache.getById(9));
+        assertTrue(cache.isBestCached(9));
+        assertFalse(cache.isBestCached(1));
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void changesToTheDatabaseDropTheCache() {
+        final LeaderboardCache cache = new LeaderboardCache(mRepository);
+        final Score low = new Score(1, 1);
+        final Score high = new Score(2, 9);
+        cache.addAll(Arrays.asList(low, high));
+        cache.load();
+        cache.getById(1);
+
+        execSQL("UPDATE scores SET score = 20 WHERE _id = ?", low.getId());
+        low.setValue(20);
+        cache.update(low);
+        assertFalse(cache.isLoaded());
+        assertFalse(cache.isBestCached(1));
+        cache.load();
+        assertIds(cache.getTop(), low, high);
+        assertEquals(20, cache.getById(1).getValue(), 0);
+
+        execSQL("DELETE FROM scores WHERE _id = ?", low.getId());
+        cache.delete((int) low.getId());
+        assertFalse(cache.isLoaded());
+        cache.load();
+        assertIds(cache.getTop(), high);
+        assertNull(cache.getById(1));
+
+        mRepository.add(new Score(3, 4));
+        cache.invalidate();
+        assertTrue(cache.getTop().isEmpty());
+        cache.load();
+        assertEquals(2, cache.getTop().size());
+    }
+
+    @Test
+    public void readsOlderThanAWriteAreNotKept() {
+        final LeaderboardCache cache = new LeaderboardCache(mRepository);
+        mRepository.add(new Score(1, 5));
+
+        // the write lands after the read, before its rows are installed
+        final Score during = new Score(1, 8);
+        mRepository.mOnRead = new Runnable() {
+            @Override
+            public void run() {
+                cache.add(during);
+            }
+        };
+        assertEquals(5, cache.getById(1).getValue(), 0);
+        assertFalse(cache.isBestCached(1));
+        assertEquals(during.getId(), cache.getById(1).getId());
+
+        final Score duringLoad = new Score(2, 9);
+        mRepository.mOnRead = new Runnable() {
+            @Override
+            public void run() {
+                cache.add(duringLoad);
+            }
+        };
+        cache.load();
+        assertEquals(duringLoad.getId(), cache.getTop().get(0).getId());
+        assertEquals(3, cache.getTop().size());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        final LeaderboardCache cache = new LeaderboardCache(mRepository, 2, 64);
+        mRepository.addAll(Arrays.asList(new Score(1, 1), new Score(2, 2), new Score(3, 3)));
+
+        cache.getTop();
+        assertCounts(cache, 0, 1);
+        cache.load();
+        cache.getTop();
+        assertCounts(cache, 1, 1);
+
+        cache.peekBest(1);
+        cache.getById(1);
+        assertCounts(cache, 1, 3);
+        cache.getById(1);
+        cache.peekBest(1);
+        assertCounts(cache, 3, 3);
+
+        // more than the cached top has to go to the database
+        cache.top(2);
+        assertCounts(cache, 4, 3);
+        assertEquals(3, cache.top(3).size());
+        assertCounts(cache, 4, 4);
+    }
+
+    private void execSQL(String sql, long id) {
+        mCheck.getWritableDatabase().execSQL(sql, new Object[] { id });
+    }
+
+    private static void assertCounts(LeaderboardCache cache, long hits, long misses) {
+        assertEquals("hits", hits, cache.getHitCount());
+        assertEquals("misses", misses, cache.getMissCount());
+    }
+
+    private static void assertIds(List<Score> actual, Score... expected) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("score " + i, expected[i].getId(), actual.get(i).getId());
+        }
+    }
+
+    /*
+     * Runs mOnRead once after the next read of the top list or a best score,
+     * where a write from another thread could come in.
+     */
+    private static class HookedRepository extends ScoreRepository {
+        Runnable mOnRead;
+
+        HookedRepository(Context context) {
+            super(context);
+        }
+
+        @Override
+        public List<Score> top(int k) {
+            final List<Score> top = super.top(k);
+            onRead();
+            return top;
+        }
+
+        @Override
+        public Score getById(int id) {
+            final Score best = super.getById(id);
+            onRead();
+            return best;
+        }
+
+        private void onRead() {
+            final Runnable hook = mOnRead;
+            mOnRead = null;
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+}
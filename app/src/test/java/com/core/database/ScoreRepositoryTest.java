@@ -0,0 +1,202 @@
+package com.core.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.core.score.Score;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ScoreRepository against real SQLite, checked through a connection of its
+ * own.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23, manifest = Config.NONE)
+public class ScoreRepositoryTest {
+    private Context mContext;
+    private ScoreRepository mRepository;
+    private FeedReaderDbHelper mCheck;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mContext.deleteDatabase(FeedReaderDbHelper.DATABASE_NAME);
+        mRepository = new ScoreRepository(mContext);
+        mCheck = new FeedReaderDbHelper(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mCheck.close();
+    }
+
+    @Test
+    public void addSetsRowIdAndTimestamp() {
+        final Score first = new Score(1, 2.5);
+        final Score second = new Score(2, 3.5);
+        final long before = System.currentTimeMillis();
+        mRepository.add(first);
+        mRepository.add(second);
+        final long after = System.currentTimeMillis();
+
+        assertTrue(first.getId() > 0);
+        assertTrue(second.getId() > first.getId());
+        assertSaved(first, before, after);
+        assertSaved(second, before, after);
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void addAllSharesOneTimestamp() {
+        final List<Score> scores = Arrays.asList(new Score(1, 1), new Score(2, 2), new Score(1, 3));
+        final long before = System.currentTimeMillis();
+        mRepository.addAll(scores);
+        final long after = System.currentTimeMillis();
+
+        long id = 0;
+        final long timestamp = timestampOf(scores.get(0));
+        for (Score score : scores) {
+            assertTrue(score.getId() > id);
+            id = score.getId();
+            assertSaved(score, before, after);
+            assertEquals(timestamp, timestampOf(score));
+        }
+        assertEquals(3, count());
+    }
+
+    @Test
+    public void addAllRollsBackWhenAnInsertFails() {
+        mRepository.add(new Score(1, 1));
+
+        // NaN is stored as NULL, which the score column doesn't take
+        final List<Score> scores = Arrays.asList(new Score(1, 2), new Score(2, Double.NaN),
+                new Score(3, 4));
+        try {
+            mRepository.addAll(scores);
+            fail("NaN was saved");
+        } catch (SQLException expected) {
+        }
+
+        assertEquals(1, count());
+        for (Score score : scores) {
+            assertEquals(0, score.getId());
+        }
+
+        // the repository still works after the rollback
+        mRepository.addAll(Arrays.asList(new Score(1, 5), new Score(2, 6)));
+        assertEquals(3, count());
+    }
+
+    @Test
+    public void topIsBestFirstAndTiesNewestFirst() {
+        final Score low = new Score(1, 1);
+        final Score tieOld = new Score(2, 5);
+        final Score high = new Score(3, 9);
+        final Score tieNew = new Score(4, 5);
+        mRepository.addAll(Arrays.asList(low, tieOld, high, tieNew));
+
+        assertIds(mRepository.top(3), high, tieNew, tieOld);
+        assertIds(mRepository.top(10), high, tieNew, tieOld, low);
+        assertIds(mRepository.page(null, 2), high, tieNew);
+    }
+
+    @Test
+    public void pagesWalkEveryScoreOnce() {
+        final List<Score> scores = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // plenty of ties, which have to be split between pages by row id
+            scores.add(new Score(i % 7, (i * 13) % 10));
+        }
+        mRepository.addAll(scores);
+
+        final List<Score> all = mRepository.getAll();
+        assertEquals(scores.size(), all.size());
+
+        final List<Score> walked = new ArrayList<>();
+        List<Score> page = mRepository.page(null, 8);
+        while (!page.isEmpty()) {
+            walked.addAll(page);
+            page = mRepository.page(page.get(page.size() - 1), 8);
+        }
+        assertIds(walked, all.toArray(new Score[all.size()]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageNeedsAPositiveLimit() {
+        mRepository.page(null, 0);
+    }
+
+    @Test
+    public void getByIdIsTheNewestBest() {
+        assertNull(mRepository.getById(1));
+
+        final Score old = new Score(1, 4);
+        final Score best = new Score(1, 4);
+        mRepository.addAll(Arrays.asList(new Score(1, 2), old, best, new Score(2, 8)));
+
+        assertEquals(best.getId(), mRepository.getById(1).getId());
+        assertEquals(4, mRepository.getById(1).getValue(), 0);
+    }
+
+    private void assertSaved(Score score, long before, long after) {
+        final SQLiteDatabase db = mCheck.getReadableDatabase();
+        final Cursor cursor = db.rawQuery("SELECT userid, score, timestamp FROM scores WHERE _id = ?",
+                new String[] { String.valueOf(score.getId()) });
+        try {
+            assertTrue("row " + score.getId() + " is missing", cursor.moveToNext());
+            assertEquals(score.getUserId(), cursor.getInt(0));
+            assertEquals(score.getValue(), cursor.getDouble(1), 0);
+            final long timestamp = cursor.getLong(2);
+            assertTrue(timestamp >= before && timestamp <= after);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long timestampOf(Score score) {
+        final Cursor cursor = mCheck.getReadableDatabase().rawQuery(
+                "SELECT timestamp FROM scores WHERE _id = ?",
+                new String[] { String.valueOf(score.getId()) });
+        try {
+            assertTrue(cursor.moveToNext());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int count() {
+        final Cursor cursor = mCheck.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM scores", null);
+        try {
+            cursor.moveToNext();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertIds(List<Score> actual, Score... expected) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("score " + i, expected[i].getId(), actual.get(i).getId());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.core.database;
+
+import android.os.Looper;
+
+import com.core.score.Score;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The write queue in front of a real ScoreRepository whose writes can be
+ * made to fail.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 23, manifest = Config.NONE)
+public class ScoreWriteQueueTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private ScoreRepository mRepository;
+    private FailingRepository mFailing;
+    private ScoreWriteQueue mQueue;
+
+    @Before
+    public void setUp() {
+        RuntimeEnvironment.application.deleteDatabase(FeedReaderDbHelper.DATABASE_NAME);
+        mRepository = new ScoreRepository(RuntimeEnvironment.application);
+        mFailing = new FailingRepository(mRepository);
+        mQueue = new ScoreWriteQueue(mFailing);
+    }
+
+    @After
+    public void tearDown() {
+        mQueue.close();
+    }
+
+    @Test
+    public void writesEveryScoreInOrder() throws InterruptedException {
+        // the same user twice, both are history
+        mQueue.add(new Score(1, 1));
+        mQueue.add(new Score(1, 2));
+        mQueue.add(new Score(2, 3));
+        assertTrue(flushAndWait());
+
+        assertEquals(3, mQueue.getWrittenCount());
+        final List<Score> saved = mRepository.getAll();
+        assertEquals(3, saved.size());
+        assertEquals(3, saved.get(0).getValue(), 0);
+        assertEquals(2, saved.get(1).getValue(), 0);
+        assertEquals(1, saved.get(2).getValue(), 0);
+    }
+
+    @Test
+    public void failedBatchIsWrittenByTheNextFlush() throws InterruptedException {
+        mFailing.mFailures = 1;
+        mQueue.add(new Score(1, 1));
+        mQueue.add(new Score(2, 2));
+        assertFalse(flushAndWait());
+        assertEquals(0, mRepository.getAll().size());
+
+        // queued after the failure, written after the retried batch
+        mQueue.add(new Score(3, 3));
+        assertTrue(flushAndWait());
+
+        final List<Score> saved = mRepository.getAll();
+        assertEquals(3, saved.size());
+        assertTrue(saved.get(2).getId() < saved.get(1).getId());
+        assertTrue(saved.get(1).getId() < saved.get(0).getId());
+        assertEquals(3, mQueue.getWrittenCount());
+        assertEquals(0, mQueue.getDroppedCount());
+    }
+
+    @Test
+    public void batchIsDroppedAfterMaxAttempts() throws InterruptedException {
+        mFailing.mFailures = ScoreWriteQueue.MAX_ATTEMPTS;
+        mQueue.add(new Score(1, 1));
+        for (int i = 0; i < ScoreWriteQueue.MAX_ATTEMPTS; i++) {
+            assertFalse(flushAndWait());
+        }
+        assertEquals(1, mQueue.getDroppedCount());
+
+        // the queue goes on with the next scores
+        mQueue.add(new Score(2, 2));
+        assertTrue(flushAndWait());
+        assertEquals(1, mRepository.getAll().size());
+        assertEquals(2, mRepository.getAll().get(0).getUserId());
+    }
+
+    /*
+     * Robolectric only runs the tasks of the writer thread's looper when its
+     * scheduler is told to, so flushAndWait() waits on another thread while
+     * this one runs what is due, but not the delayed retry.
+     */
+    private boolean flushAndWait() throws InterruptedException {
+        final boolean[] written = new boolean[1];
+        final Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                written[0] = mQueue.flushAndWait(TIMEOUT_MS);
+            }
+        };
+        waiter.start();
+        final Looper looper = mQueue.getLooper();
+        final Scheduler scheduler = ((ShadowLooper) Shadow.extract(looper)).getScheduler();
+        while (waiter.isAlive()) {
+            scheduler.advanceBy(0, TimeUnit.MILLISECONDS);
+            waiter.join(10);
+        }
+        return written[0];
+    }
+
+    /*
+     * Throws from the next mFailures writes, then passes them on.
+     */
+    private static class FailingRepository implements IRepository<Score> {
+        private final IRepository<Score> mRepository;
+        volatile int mFailures;
+
+        FailingRepository(IRepository<Score> repository) {
+            mRepository = repository;
+        }
+
+        @Override
+        public List<Score> getAll() {
+            return mRepository.getAll();
+        }
+
+        @Override
+        public void forEach(Visitor<Score> visitor) {
+            mRepository.forEach(visitor);
+        }
+
+        @Override
+        public List<Score> page(Score after, int limit) {
+            return mRepository.page(after, limit);
+        }
+
+        @Override
+        public List<Score> top(int k) {
+            return mRepository.top(k);
+        }
+
+        @Override
+        public Score getById(int id) {
+            return mRepository.getById(id);
+        }
+
+        @Override
+        public void add(Score score) {
+            fail();
+            mRepository.add(score);
+        }
+
+        @Override
+        public void addAll(Collection<Score> scores) {
+            fail();
+            mRepository.addAll(scores);
+        }
+
+        @Override
+        public void update(Score score) {
+            mRepository.update(score);
+        }
+
+        @Override
+        public void delete(int id) {
+            mRepository.delete(id);
+        }
+
+        private void fail() {
+            if (mFailures > 0) {
+                mFailures--;
+                throw new IllegalStateException("disk full");
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.core.game;
+
+import com.core.physics.FixedStepClock;
+import com.core.physics.ParticleEngine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The governor's hysteresis, driven window by window with made-up loads.
+ */
+public class QualityGovernorTest {
+    // well over, in between and well under the default budget
+    private static final float BUSY = 0.9f;
+    private static final float NORMAL = 0.5f;
+    private static final float QUIET = 0.1f;
+
+    private FixedStepClock mClock;
+    private ParticleEngine mEngine;
+    private QualityGovernor mGovernor;
+    private long mNow;
+
+    @Before
+    public void setUp() {
+        mClock = new FixedStepClock();
+        mEngine = new ParticleEngine(0.004f);
+        mGovernor = new QualityGovernor(mClock, mEngine);
+        mNow = 1000000000L;
+        mGovernor.onFrame(mNow);
+    }
+
+    @Test
+    public void stepsDownAtOnceOverBudget() {
+        window(BUSY);
+        assertLevel(1);
+        window(BUSY);
+        assertLevel(2);
+        window(BUSY);
+        window(BUSY);
+        assertLevel(QualityGovernor.LEVEL_COUNT - 1);
+        assertEquals(QualityGovernor.LEVEL_COUNT - 1, mGovernor.getDowngrades());
+        assertEquals(BUSY, mGovernor.getLastLoad(), 1e-6f);
+    }
+
+    @Test
+    public void keepsTheLevelBetweenThresholds() {
+        mGovernor.setLevel(2);
+        for (int i = 0; i < 100; i++) {
+            window(NORMAL);
+        }
+        assertLevel(2);
+        assertEquals(0, mGovernor.getDowngrades());
+        assertEquals(0, mGovernor.getUpgrades());
+    }
+
+    @Test
+    public void stepsUpAfterQuietWindowsInARow() {
+        mGovernor.setLevel(2);
+        quiet(QualityGovernor.UPGRADE_WINDOWS - 1);
+        assertLevel(2);
+
+        // one window in between starts the count over
+        window(NORMAL);
+        quiet(QualityGovernor.UPGRADE_WINDOWS - 1);
+        assertLevel(2);
+        window(QUIET);
+        assertLevel(1);
+        assertEquals(1, mGovernor.getUpgrades());
+
+        quiet(QualityGovernor.UPGRADE_WINDOWS);
+        assertLevel(QualityGovernor.LEVEL_BEST);
+        quiet(QualityGovernor.UPGRADE_WINDOWS);
+        assertLevel(QualityGovernor.LEVEL_BEST);
+    }
+
+    @Test
+    public void failedUpgradesDoubleTheHoldTime() {
+        mGovernor.setLevel(3);
+        int hold = QualityGovernor.UPGRADE_WINDOWS;
+        for (int attempt = 0; attempt < 8; attempt++) {
+            quiet(hold - 1);
+            assertLevel(3);
+            window(QUIET);
+            assertLevel(2);
+
+            // the upgrade was too much, back down
+            window(BUSY);
+            assertLevel(3);
+            hold = Math.min(hold * 2, QualityGovernor.MAX_UPGRADE_WINDOWS);
+        }
+        assertEquals(QualityGovernor.MAX_UPGRADE_WINDOWS, hold);
+    }
+
+    @Test
+    public void laterOverloadKeepsTheHoldTime() {
+        mGovernor.setLevel(3);
+        quiet(QualityGovernor.UPGRADE_WINDOWS);
+        assertLevel(2);
+
+        // not right after the upgrade, so the upgrade itself was fine
+        window(NORMAL);
+        window(BUSY);
+        assertLevel(3);
+        quiet(QualityGovernor.UPGRADE_WINDOWS);
+        assertLevel(2);
+    }
+
+    @Test
+    public void droppedTimeStepsDown() {
+        mClock.advance(0);
+        // a second behind is far more than the clock catches up on
+        mClock.advance(1000000000L);
+        window(QUIET);
+        assertLevel(1);
+
+        // dropped once, not in every window after
+        window(NORMAL);
+        assertLevel(1);
+    }
+
+    @Test
+    public void shortWindowsDecideNothing() {
+        mGovernor.recordSteps(QualityGovernor.WINDOW_NANOS);
+        mGovernor.onFrame(mNow + QualityGovernor.WINDOW_NANOS - 1);
+        assertLevel(QualityGovernor.LEVEL_BEST);
+
+        mGovernor.onFrame(mNow + QualityGovernor.WINDOW_NANOS);
+        assertLevel(1);
+    }
+
+    @Test
+    public void drawTimeCounts() {
+        mGovernor.recordSteps(QualityGovernor.WINDOW_NANOS / 2);
+        mGovernor.recordDraw(QualityGovernor.WINDOW_NANOS / 2);
+        mNow += QualityGovernor.WINDOW_NANOS;
+        mGovernor.onFrame(mNow);
+        assertLevel(1);
+    }
+
+    @Test
+    public void resetForgetsTheWindow() {
+        mGovernor.setLevel(2);
+        quiet(QualityGovernor.UPGRADE_WINDOWS - 1);
+        mGovernor.reset();
+
+        // the pause is neither idle nor busy time, it only starts a window
+        mNow += 60 * 1000000000L;
+        mGovernor.onFrame(mNow);
+        assertLevel(2);
+        quiet(QualityGovernor.UPGRADE_WINDOWS - 1);
+        assertLevel(2);
+        window(QUIET);
+        assertLevel(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void budgetMustBePositive() {
+        new QualityGovernor(mClock, mEngine, 0);
+    }
+
+    /*
+     * Closes a window in which the simulation was busy for the given share
+     * of it.
+     */
+    private void window(float load) {
+        mGovernor.recordSteps((long) (load * QualityGovernor.WINDOW_NANOS));
+        mNow += QualityGovernor.WINDOW_NANOS;
+        mGovernor.onFrame(mNow);
+    }
+
+    private void quiet(int windows) {
+        for (int i = 0; i < windows; i++) {
+            window(QUIET);
+        }
+    }
+
+    private void assertLevel(int level) {
+        assertEquals(level, mGovernor.getLevel());
+        assertEquals(QualityGovernor.getStepHz(level), mClock.getStepHz());
+        assertEquals(QualityGovernor.getMaxIterations(level), mEngine.getMaxIterations());
+    }
+}
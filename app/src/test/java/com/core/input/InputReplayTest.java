@@ -0,0 +1,148 @@
+package com.core.input;
+
+import com.core.physics.FastRandom;
+import com.core.physics.FixedStepClock;
+import com.core.physics.ParticleEngine;
+import com.core.physics.SimulationLoop;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records a live SimulationLoop and replays the recording into a fresh
+ * engine, which has to end up in exactly the same state.
+ */
+public class InputReplayTest {
+    private static final float BALL_DIAMETER = 0.004f;
+    private static final int BALLS = 200;
+    private static final long RUN_MILLIS = 500;
+
+    @Test
+    public void replayMatchesRecording() throws Exception {
+        final ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        final Simulation live = record(recording, 42);
+
+        final InputPlayer player = new InputPlayer(new ByteArrayInputStream(recording.toByteArray()));
+        final FixedStepClock clock = new FixedStepClock();
+        final Simulation replay = new Simulation(player.getSeed());
+        player.applySettings(clock, replay.mEngine);
+        final int frames = player.play(clock, replay);
+        player.close();
+
+        assertTrue("nothing was recorded", frames > 0 && live.mSteps > 0);
+        assertEquals(live.mSteps, replay.mSteps);
+        assertSameState(live.mEngine, replay.mEngine);
+    }
+
+    @Test
+    public void replayNeedsTheRecordedSettings() throws Exception {
+        final ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        final Simulation live = record(recording, 42);
+
+        // the default settings, as if the header was ignored
+        final InputPlayer player = new InputPlayer(new ByteArrayInputStream(recording.toByteArray()));
+        final Simulation replay = new Simulation(player.getSeed());
+        player.play(new FixedStepClock(), replay);
+        player.close();
+
+        assertFalse(sameState(live.mEngine, replay.mEngine));
+    }
+
+    /*
+     * Runs a live loop under a tilt that keeps changing, with settings that
+     * differ from the defaults, and records it.
+     */
+    private static Simulation record(ByteArrayOutputStream out, long seed)
+            throws IOException, InterruptedException {
+        final FixedStepClock clock = new FixedStepClock(45, 3);
+        final Simulation simulation = new Simulation(seed);
+        final ParticleEngine engine = simulation.mEngine;
+        engine.setMaxIterations(4);
+        engine.setPenetrationTolerance(BALL_DIAMETER * 0.025f);
+        engine.setWarmStarting(true);
+        engine.setContinuousCollision(true);
+
+        final InputRecorder recorder = new InputRecorder(out, seed, clock, engine);
+        final SimulationLoop loop = new SimulationLoop(clock, new SimulationLoop.InputSource() {
+            @Override
+            public long readTilt(long nowNanos, float[] tilt) {
+                final double angle = nowNanos * 1e-9 * 4;
+                tilt[0] = (float) (9.81 * Math.cos(angle));
+                tilt[1] = (float) (9.81 * Math.sin(angle));
+                return nowNanos;
+            }
+        }, simulation);
+        loop.setRecorder(recorder);
+        loop.setBounds(0.02f, 0.035f);
+        loop.start();
+        Thread.sleep(RUN_MILLIS);
+        loop.stop();
+        assertFalse(recorder.checkError());
+        recorder.close();
+        return simulation;
+    }
+
+    private static void assertSameState(ParticleEngine expected, ParticleEngine actual) {
+        assertEquals(expected.getParticleCount(), actual.getParticleCount());
+        for (int i = 0; i < expected.getParticleCount(); i++) {
+            assertEquals("x of ball " + i, Float.floatToIntBits(expected.getPosX(i)),
+                    Float.floatToIntBits(actual.getPosX(i)));
+            assertEquals("y of ball " + i, Float.floatToIntBits(expected.getPosY(i)),
+                    Float.floatToIntBits(actual.getPosY(i)));
+            assertEquals("vx of ball " + i, Float.floatToIntBits(expected.getVelX(i)),
+                    Float.floatToIntBits(actual.getVelX(i)));
+            assertEquals("vy of ball " + i, Float.floatToIntBits(expected.getVelY(i)),
+                    Float.floatToIntBits(actual.getVelY(i)));
+        }
+    }
+
+    private static boolean sameState(ParticleEngine a, ParticleEngine b) {
+        if (a.getParticleCount() != b.getParticleCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.getParticleCount(); i++) {
+            if (a.getPosX(i) != b.getPosX(i) || a.getPosY(i) != b.getPosY(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The engine with seeded balls, stepped by the loop or the player.
+     */
+    private static class Simulation implements SimulationLoop.Callback {
+        private final ParticleEngine mEngine;
+        private int mSteps;
+
+        Simulation(long seed) {
+            mEngine = new ParticleEngine(BALL_DIAMETER, BALLS, new FastRandom(seed));
+            final FastRandom random = mEngine.getRandom();
+            for (int i = 0; i < BALLS; i++) {
+                mEngine.addParticle(random.nextFloat() * 0.02f, random.nextFloat() * 0.02f);
+            }
+        }
+
+        @Override
+        public void onBounds(float horizontalBound, float verticalBound) {
+            mEngine.setBounds(horizontalBound, verticalBound);
+        }
+
+        @Override
+        public void onStep(float sx, float sy, float dT) {
+            mEngine.update(sx, sy, dT);
+            mSteps++;
+        }
+
+        @Override
+        public void onFrame(long stepTimeNanos, long stepNanos, long inputNanos) {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.core.input;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SensorClockTest {
+    private static final long MILLIS = 1000000L;
+    // the event was produced this long before it arrived
+    private static final long LATENCY = 4 * MILLIS;
+
+    @Test
+    public void monotonicTimestampsAreKept() {
+        final SensorClock clock = new SensorClock();
+        final long nanoTime = 5000 * MILLIS;
+        final long elapsed = 9000 * MILLIS;
+        assertEquals(nanoTime - LATENCY, clock.toNanoTime(nanoTime - LATENCY, nanoTime, elapsed));
+        assertEquals(0, clock.getOffset());
+        assertEquals(nanoTime + 20 * MILLIS,
+                clock.toNanoTime(nanoTime + 20 * MILLIS, nanoTime + 24 * MILLIS, elapsed + 24 * MILLIS));
+    }
+
+    @Test
+    public void boottimeTimestampsAreShifted() {
+        // slept for half a second, closer than any fixed slack would allow
+        final SensorClock clock = new SensorClock();
+        final long nanoTime = 5000 * MILLIS;
+        final long elapsed = nanoTime + 500 * MILLIS;
+        assertEquals(nanoTime - LATENCY, clock.toNanoTime(elapsed - LATENCY, nanoTime, elapsed));
+
+        // later events keep the offset whenever they arrive
+        assertEquals(nanoTime + 16 * MILLIS,
+                clock.toNanoTime(elapsed + 16 * MILLIS, nanoTime + 40 * MILLIS, elapsed + 40 * MILLIS));
+    }
+
+    @Test
+    public void closeClocksStayWithinTheirDifference() {
+        final SensorClock clock = new SensorClock();
+        final long nanoTime = 5000 * MILLIS;
+        final long elapsed = nanoTime + LATENCY;
+        // on the boot clock, but nearer to nanoTime
+        final long sensor = elapsed - LATENCY;
+        final long mapped = clock.toNanoTime(sensor, nanoTime, elapsed);
+        assertTrue(Math.abs(mapped - (sensor - LATENCY)) <= elapsed - nanoTime);
+    }
+
+    @Test
+    public void resetCalibratesAgain() {
+        final SensorClock clock = new SensorClock();
+        clock.toNanoTime(1000 * MILLIS, 1000 * MILLIS, 3000 * MILLIS);
+        assertEquals(0, clock.getOffset());
+
+        clock.reset();
+        // the device slept another two seconds while unregistered
+        clock.toNanoTime(5000 * MILLIS, 1000 * MILLIS, 5000 * MILLIS);
+        assertEquals(-4000 * MILLIS, clock.getOffset());
+    }
+}
@@ -0,0 +1,98 @@
+package com.core.physics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The parallel solver gives bit-identical positions whatever the number of
+ * workers, with one worker being the serial run on the calling thread.
+ */
+public class ParallelSolverTest {
+    private static final float BALL_DIAMETER = 0.004f;
+    private static final int BALLS = 1500;
+    private static final int STEPS = 120;
+    private static final float DT = 1.0f / 60;
+
+    private ParallelSolver mSerial;
+    private ParallelSolver mParallel;
+
+    @After
+    public void tearDown() {
+        if (mSerial != null) {
+            mSerial.shutdown();
+        }
+        if (mParallel != null) {
+            mParallel.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelMatchesSerial() {
+        mSerial = new ParallelSolver(1);
+        mParallel = new ParallelSolver(4);
+        final ParticleEngine serial = simulate(mSerial);
+        final ParticleEngine parallel = simulate(mParallel);
+        assertSamePositions(serial, parallel);
+    }
+
+    @Test
+    public void repeatedRunsMatch() {
+        mParallel = new ParallelSolver(3);
+        final ParticleEngine first = simulate(mParallel);
+        final ParticleEngine second = simulate(mParallel);
+        assertSamePositions(first, second);
+    }
+
+    @Test
+    public void solvesAboveMinParticlesOnly() {
+        mParallel = new ParallelSolver(2);
+        final ParticleEngine withSolver = build(mParallel, 50);
+        final ParticleEngine without = build(null, 50);
+        for (int step = 0; step < STEPS; step++) {
+            withSolver.update(3, -9, DT);
+            without.update(3, -9, DT);
+        }
+        // below the minimum the engine's own solver runs, as without one
+        assertSamePositions(without, withSolver);
+    }
+
+    /*
+     * A pile tilted around so the balls keep colliding, the same for every
+     * call.
+     */
+    private static ParticleEngine simulate(ParallelSolver solver) {
+        solver.setMinParticles(0);
+        final ParticleEngine engine = build(solver, BALLS);
+        for (int step = 0; step < STEPS; step++) {
+            final double angle = step * 0.05;
+            engine.update((float) (9.81 * Math.cos(angle)), (float) (9.81 * Math.sin(angle)), DT);
+        }
+        assertTrue("the balls never touched", engine.getLastContacts() > 0);
+        return engine;
+    }
+
+    private static ParticleEngine build(ParallelSolver solver, int balls) {
+        final ParticleEngine engine = new ParticleEngine(BALL_DIAMETER, balls, new FastRandom(7));
+        engine.setBounds(0.05f, 0.08f);
+        engine.setParallelSolver(solver);
+        final FastRandom random = engine.getRandom();
+        for (int i = 0; i < balls; i++) {
+            engine.addParticle((random.nextFloat() * 2 - 1) * 0.05f,
+                    (random.nextFloat() * 2 - 1) * 0.08f);
+        }
+        return engine;
+    }
+
+    private static void assertSamePositions(ParticleEngine expected, ParticleEngine actual) {
+        assertEquals(expected.getParticleCount(), actual.getParticleCount());
+        for (int i = 0; i < expected.getParticleCount(); i++) {
+            assertEquals("x of ball " + i, Float.floatToIntBits(expected.getPosX(i)),
+                    Float.floatToIntBits(actual.getPosX(i)));
+            assertEquals("y of ball " + i, Float.floatToIntBits(expected.getPosY(i)),
+                    Float.floatToIntBits(actual.getPosY(i)));
+        }
+    }
+}
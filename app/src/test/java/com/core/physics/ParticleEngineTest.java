@@ -0,0 +1,222 @@
+package com.core.physics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Headless runs of the engine under tilt, checked against the brute-force
+ * overlap of every pair and against the engine's own brute-force path.
+ */
+public class ParticleEngineTest {
+    private static final float BALL_DIAMETER = 0.004f;
+    private static final float DT = 1.0f / 60;
+
+    @Test
+    public void earlyOutKeepsOverlapUnderTolerance() {
+        final float tolerance = BALL_DIAMETER * 0.025f;
+        int earlyOuts = 0;
+        for (int balls : new int[] { 15, 60, 150 }) {
+            final ParticleEngine engine = build(balls, 3);
+            engine.setPenetrationTolerance(tolerance);
+            // sleeping pairs aren't solved, leave them out of the sum
+            engine.setSleepingEnabled(false);
+            for (int step = 0; step < 600; step++) {
+                // settle, then keep the pile rolling around the table
+                final double angle = step < 200 ? 0 : (step - 200) * 0.02;
+                engine.update((float) (9.81 * Math.sin(angle)), (float) (-9.81 * Math.cos(angle)), DT);
+                final int iterations = engine.getLastIterations();
+                if (iterations > 0 && iterations < engine.getMaxIterations()) {
+                    earlyOuts++;
+                    final double overlap = totalOverlap(engine);
+                    assertTrue(balls + " balls, step " + step + ": " + overlap + " m left",
+                            overlap <= tolerance * 1.001);
+                }
+            }
+        }
+        assertTrue("the solver never stopped early", earlyOuts > 100);
+    }
+
+    @Test
+    public void pileFallsAsleepAndWakesOnTilt() {
+        for (long seed = 1; seed <= 6; seed++) {
+            for (int balls : new int[] { 8, 60 }) {
+                final ParticleEngine engine = build(balls, seed);
+                // the game's settings
+                engine.setPenetrationTolerance(BALL_DIAMETER * 0.025f);
+                engine.setWarmStarting(true);
+                engine.setContinuousCollision(true);
+
+                final String pile = balls + " balls, seed " + seed;
+                int step = 0;
+                while (engine.getSleepingCount() < balls) {
+                    assertTrue(pile + " still awake", ++step <= 1200);
+                    engine.update(3, -9, DT);
+                }
+                // nothing left to solve
+                engine.update(3, -9, DT);
+                assertEquals(pile, 0, engine.getLastIterations());
+
+                // less than WAKE_TILT keeps it asleep, more wakes everything
+                engine.update(3.1f, -9.1f, DT);
+                assertEquals(pile, balls, engine.getSleepingCount());
+                engine.update(3.3f, -9.3f, DT);
+                assertEquals(pile, 0, engine.getSleepingCount());
+            }
+        }
+    }
+
+    @Test
+    public void noSleepWithoutWarmStarting() {
+        final ParticleEngine engine = build(15, 1);
+        for (int step = 0; step < 1200; step++) {
+            engine.update(3, -9, DT);
+            assertEquals(0, engine.getSleepingCount());
+        }
+    }
+
+    /*
+     * In a pile the grid resolves a ball's contacts in another order than
+     * the scan of every pair, which changes the result and soon the whole
+     * pile. With every ball touching at most one other both resolve the same
+     * pairs in the same order, so the runs have to match to the bit.
+     */
+    @Test
+    public void broadphaseMatchesBruteForce() {
+        for (long seed = 1; seed <= 5; seed++) {
+            final ParticleEngine grid = buildPairs(seed);
+            final ParticleEngine bruteForce = buildPairs(seed);
+            bruteForce.setBroadphaseEnabled(false);
+            assertTrue(totalOverlap(grid) > 0);
+            for (int step = 0; step < 60; step++) {
+                grid.update(0, 0, DT);
+                bruteForce.update(0, 0, DT);
+                for (int i = 0; i < grid.getParticleCount(); i++) {
+                    final String ball = "seed " + seed + ", step " + step + ", ball " + i;
+                    assertEquals(ball, bruteForce.getPosX(i), grid.getPosX(i), 0);
+                    assertEquals(ball, bruteForce.getPosY(i), grid.getPosY(i), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void queryRegionMatchesScan() {
+        final ParticleEngine engine = build(150, 7);
+        for (int step = 0; step < 300; step++) {
+            final double angle = step * 0.02;
+            engine.update((float) (9.81 * Math.sin(angle)), (float) (-9.81 * Math.cos(angle)), DT);
+            if (step % 20 != 0) {
+                continue;
+            }
+            for (int i = 0; i < engine.getParticleCount(); i++) {
+                final float x = engine.getPosX(i);
+                final float y = engine.getPosY(i);
+                engine.setBroadphaseEnabled(true);
+                final List<Integer> grid = query(engine, x, y);
+                engine.setBroadphaseEnabled(false);
+                final List<Integer> scan = query(engine, x, y);
+                assertTrue(scan.contains(i));
+                assertEquals("step " + step + ", ball " + i, scan, grid);
+            }
+            engine.setBroadphaseEnabled(true);
+        }
+    }
+
+    /*
+     * The indices of the balls within a ball's width of (x, y), in index
+     * order.
+     */
+    private static List<Integer> query(ParticleEngine engine, float x, float y) {
+        final boolean[] visited = new boolean[engine.getParticleCount()];
+        engine.queryRegion(x - BALL_DIAMETER, y - BALL_DIAMETER, x + BALL_DIAMETER, y + BALL_DIAMETER,
+                new ParticleEngine.ParticleVisitor() {
+                    @Override
+                    public void visit(int index) {
+                        visited[index] = true;
+                    }
+                });
+        final List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < visited.length; i++) {
+            if (visited[i]) {
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+
+    /*
+     * Pairs of overlapping or almost touching balls at random angles, spread
+     * far enough apart that no ball reaches another pair within a second.
+     * The balls are added in random order, so the higher index of a pair
+     * lies on any side of the lower one.
+     */
+    private static ParticleEngine buildPairs(long seed) {
+        final int side = 6;
+        final float bound = 0.1f;
+        final float spacing = 2 * bound / side;
+        final ParticleEngine engine = new ParticleEngine(BALL_DIAMETER, 2 * side * side, new FastRandom(seed));
+        engine.setBounds(bound, bound);
+
+        final FastRandom random = new FastRandom(seed);
+        final float[] x = new float[2 * side * side];
+        final float[] y = new float[2 * side * side];
+        int n = 0;
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                final float cx = -bound + spacing * (column + 0.5f) + (random.nextFloat() - 0.5f) * BALL_DIAMETER;
+                final float cy = -bound + spacing * (row + 0.5f) + (random.nextFloat() - 0.5f) * BALL_DIAMETER;
+                final double angle = random.nextFloat() * 2 * Math.PI;
+                final float distance = BALL_DIAMETER * (0.7f + 0.6f * random.nextFloat());
+                x[n] = cx;
+                y[n++] = cy;
+                x[n] = (float) (cx + distance * Math.cos(angle));
+                y[n++] = (float) (cy + distance * Math.sin(angle));
+            }
+        }
+        for (int i = n - 1; i > 0; i--) {
+            final int j = (int) (random.nextFloat() * (i + 1));
+            final float tx = x[i];
+            final float ty = y[i];
+            x[i] = x[j];
+            y[i] = y[j];
+            x[j] = tx;
+            y[j] = ty;
+        }
+        for (int i = 0; i < n; i++) {
+            engine.addParticle(x[i], y[i]);
+        }
+        return engine;
+    }
+
+    static ParticleEngine build(int balls, long seed) {
+        final ParticleEngine engine = new ParticleEngine(BALL_DIAMETER, balls, new FastRandom(seed));
+        engine.setBounds(0.03f, 0.05f);
+        final FastRandom random = engine.getRandom();
+        for (int i = 0; i < balls; i++) {
+            engine.addParticle((random.nextFloat() * 2 - 1) * 0.03f,
+                    (random.nextFloat() * 2 - 1) * 0.05f);
+        }
+        return engine;
+    }
+
+    static double totalOverlap(ParticleEngine engine) {
+        double overlap = 0;
+        final int count = engine.getParticleCount();
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                final double dx = engine.getPosX(j) - engine.getPosX(i);
+                final double dy = engine.getPosY(j) - engine.getPosY(i);
+                final double distance = Math.sqrt(dx * dx + dy * dy);
+                if (distance < BALL_DIAMETER) {
+                    overlap += BALL_DIAMETER - distance;
+                }
+            }
+        }
+        return overlap;
+    }
+}
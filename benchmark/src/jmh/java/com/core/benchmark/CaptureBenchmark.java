@@ -0,0 +1,65 @@
+package com.core.benchmark;
+
+import com.core.physics.KinematicBody;
+import com.core.physics.ParticleEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cup capture query of ParticleSystem.detectCollisions, without the
+ * sound and the score write that follow a capture.
+ *
+ * With the broadphase off the engine falls back to testing every ball, which
+ * is how captures used to be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CaptureBenchmark {
+    // Cup.SIZE
+    private static final float CUP_SIZE = 0.008f;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int balls;
+
+    @Param({"true", "false"})
+    public boolean broadphase;
+
+    private ParticleEngine mEngine;
+    private KinematicBody mCup;
+    private final Counter mCounter = new Counter();
+
+    private static final class Counter implements ParticleEngine.ParticleVisitor {
+        int mCount;
+
+        @Override
+        public void visit(int index) {
+            mCount++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mEngine = Tables.create(balls);
+        mEngine.setBroadphaseEnabled(broadphase);
+        mCup = new KinematicBody(CUP_SIZE, CUP_SIZE);
+        // one step so the grid is as detectCollisions finds it
+        mEngine.update(0, 0, 0);
+    }
+
+    @Benchmark
+    public int queryBox() {
+        mCounter.mCount = 0;
+        mEngine.queryBox(mCup, mCounter);
+        return mCounter.mCount;
+    }
+}
@@ -0,0 +1,53 @@
+package com.core.benchmark;
+
+import com.core.physics.FixedStepClock;
+import com.core.physics.ParticleEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulation step, what ParticleSystem.onStep spends on the balls.
+ *
+ * The table is rebuilt for every iteration so the balls do not all end up
+ * piled in one corner after a few thousand steps of the same tilt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParticleEngineBenchmark {
+    private static final float DT = 1.0f / FixedStepClock.DEFAULT_STEP_HZ;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int balls;
+
+    @Param({"true", "false"})
+    public boolean broadphase;
+
+    private ParticleEngine mEngine;
+    private int mStep;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mEngine = Tables.create(balls);
+        mEngine.setBroadphaseEnabled(broadphase);
+        mStep = 0;
+    }
+
+    @Benchmark
+    public ParticleEngine update() {
+        // tilt the phone slowly around so the balls keep moving
+        final float angle = (mStep++ & 1023) * (float) (2 * Math.PI / 1024);
+        mEngine.update((float) Math.cos(angle) * 9.81f, (float) Math.sin(angle) * 9.81f, DT);
+        return mEngine;
+    }
+}
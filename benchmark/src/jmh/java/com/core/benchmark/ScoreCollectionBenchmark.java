@@ -0,0 +1,69 @@
+package com.core.benchmark;
+
+import com.core.score.Score;
+import com.core.score.ScoreCollection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScoreCollection with users 0 .. users - 1 already in it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScoreCollectionBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int users;
+
+    private ScoreCollection mScores;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mScores = new ScoreCollection();
+        for (int i = 0; i < users; i++) {
+            mScores.addScore(i, i);
+        }
+    }
+
+    /*
+     * Replaces the score of a user already in the collection.
+     */
+    @Benchmark
+    public ScoreCollection updateScore() {
+        mScores.addScore(nextUser(), 1.5);
+        return mScores;
+    }
+
+    @Benchmark
+    public Score getScore() {
+        return mScores.getScore(nextUser());
+    }
+
+    /*
+     * Builds a collection from scratch, a new user per score.
+     */
+    @Benchmark
+    public ScoreCollection fill() {
+        final ScoreCollection scores = new ScoreCollection();
+        for (int i = 0; i < users; i++) {
+            scores.addScore(i, i);
+        }
+        return scores;
+    }
+
+    private int nextUser() {
+        final int user = mNext;
+        mNext = user + 1 == users ? 0 : user + 1;
+        return user;
+    }
+}
@@ -0,0 +1,149 @@
+package com.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The leaderboard reads of ScoreRepository against a history of the given
+ * size, through JDBC like ScoreWriteBenchmark.
+ *
+ * top() and pageKeyset() are the queries the repository runs; pageOffset()
+ * is the same deep page with OFFSET, which has to step over every row before
+ * it, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScoreReadBenchmark {
+    private static final int PAGE = 20;
+
+    // FeedReaderDbHelper, version 2
+    private static final String SQL_CREATE_ENTRIES =
+            "CREATE TABLE scores (_id INTEGER PRIMARY KEY, userid INTEGER NOT NULL,"
+                    + " score REAL NOT NULL, timestamp INTEGER NOT NULL)";
+    private static final String SQL_CREATE_INDEX_USERID_SCORE =
+            "CREATE INDEX scores_userid_score ON scores (userid, score)";
+    private static final String SQL_CREATE_INDEX_SCORE =
+            "CREATE INDEX scores_score ON scores (score)";
+    private static final String SQL_INSERT =
+            "INSERT INTO scores (userid, score, timestamp) VALUES (?, ?, ?)";
+
+    // ScoreRepository.top() and page()
+    private static final String SQL_TOP =
+            "SELECT _id, userid, score FROM scores ORDER BY score DESC, _id DESC LIMIT ?";
+    private static final String SQL_PAGE_AFTER =
+            "SELECT _id, userid, score FROM scores WHERE score <= ? AND (score < ? OR _id < ?)"
+                    + " ORDER BY score DESC, _id DESC LIMIT ?";
+    private static final String SQL_PAGE_OFFSET =
+            "SELECT _id, userid, score FROM scores ORDER BY score DESC, _id DESC"
+                    + " LIMIT ? OFFSET ?";
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private File mFile;
+    private Connection mConnection;
+    private PreparedStatement mTop;
+    private PreparedStatement mPageAfter;
+    private PreparedStatement mPageOffset;
+
+    // the last row of the page before the middle of the table
+    private double mMiddleScore;
+    private long mMiddleId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("scores", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getPath());
+        final Statement statement = mConnection.createStatement();
+        statement.execute(SQL_CREATE_ENTRIES);
+
+        final Random random = new Random(1);
+        final PreparedStatement insert = mConnection.prepareStatement(SQL_INSERT);
+        mConnection.setAutoCommit(false);
+        for (int i = 0; i < rows; i++) {
+            insert.setInt(1, random.nextInt(1000));
+            insert.setDouble(2, random.nextInt(200000) * 0.5);
+            insert.setLong(3, i);
+            insert.executeUpdate();
+        }
+        mConnection.commit();
+        mConnection.setAutoCommit(true);
+        insert.close();
+
+        statement.execute(SQL_CREATE_INDEX_USERID_SCORE);
+        statement.execute(SQL_CREATE_INDEX_SCORE);
+        statement.close();
+
+        mTop = mConnection.prepareStatement(SQL_TOP);
+        mPageAfter = mConnection.prepareStatement(SQL_PAGE_AFTER);
+        mPageOffset = mConnection.prepareStatement(SQL_PAGE_OFFSET);
+
+        mPageOffset.setInt(1, 1);
+        mPageOffset.setInt(2, rows / 2 - 1);
+        final ResultSet middle = mPageOffset.executeQuery();
+        middle.next();
+        mMiddleId = middle.getLong(1);
+        mMiddleScore = middle.getDouble(3);
+        middle.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mTop.close();
+        mPageAfter.close();
+        mPageOffset.close();
+        mConnection.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public double top() throws SQLException {
+        mTop.setInt(1, PAGE);
+        return sum(mTop.executeQuery());
+    }
+
+    @Benchmark
+    public double pageKeyset() throws SQLException {
+        mPageAfter.setDouble(1, mMiddleScore);
+        mPageAfter.setDouble(2, mMiddleScore);
+        mPageAfter.setLong(3, mMiddleId);
+        mPageAfter.setInt(4, PAGE);
+        return sum(mPageAfter.executeQuery());
+    }
+
+    @Benchmark
+    public double pageOffset() throws SQLException {
+        mPageOffset.setInt(1, PAGE);
+        mPageOffset.setInt(2, rows / 2);
+        return sum(mPageOffset.executeQuery());
+    }
+
+    private static double sum(ResultSet page) throws SQLException {
+        double sum = 0;
+        while (page.next()) {
+            sum += page.getDouble(3);
+        }
+        page.close();
+        return sum;
+    }
+}
@@ -0,0 +1,134 @@
+package com.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SQL behind the score writes of ScoreRepository.
+ *
+ * android.database.sqlite is not available on the JVM, so this does not call
+ * the repository. It runs the same table, indexes and statements against
+ * SQLite through JDBC, on a database file like the one on the device. The
+ * absolute numbers differ from a phone's flash, the ratio to the simulation
+ * step is what matters. That the repository itself issues these statements
+ * is checked by ScoreRepositoryTest under Robolectric.
+ *
+ * add() is the compiled single-row insert in its own transaction, addParsed()
+ * the same but compiling the insert for every row like SQLiteDatabase.insert
+ * does. addBatch() inserts ScoreWriteQueue.FLUSH_COUNT scores in one
+ * transaction the way ScoreRepository.addAll does, and importHistory() a
+ * large score history the same way. The batched ones report the cost per
+ * score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScoreWriteBenchmark {
+    // FeedReaderDbHelper.SQL_CREATE_ENTRIES and its indexes, version 2
+    private static final String SQL_CREATE_ENTRIES =
+            "CREATE TABLE scores (_id INTEGER PRIMARY KEY, userid INTEGER NOT NULL,"
+                    + " score REAL NOT NULL, timestamp INTEGER NOT NULL)";
+    private static final String SQL_CREATE_INDEX_USERID_SCORE =
+            "CREATE INDEX scores_userid_score ON scores (userid, score)";
+    private static final String SQL_CREATE_INDEX_SCORE =
+            "CREATE INDEX scores_score ON scores (score)";
+    private static final String SQL_INSERT =
+            "INSERT INTO scores (userid, score, timestamp) VALUES (?, ?, ?)";
+    // ScoreWriteQueue.FLUSH_COUNT
+    private static final int BATCH = 32;
+    private static final int IMPORT = 10000;
+
+    private File mFile;
+    private Connection mConnection;
+    private PreparedStatement mInsert;
+    private double mScore;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        mFile = File.createTempFile("scores", ".db");
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getPath());
+        final Statement statement = mConnection.createStatement();
+        statement.execute(SQL_CREATE_ENTRIES);
+        statement.execute(SQL_CREATE_INDEX_USERID_SCORE);
+        statement.execute(SQL_CREATE_INDEX_SCORE);
+        statement.close();
+        mInsert = mConnection.prepareStatement(SQL_INSERT);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mInsert.close();
+        mConnection.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public int add() throws SQLException {
+        mScore += 0.5;
+        mInsert.setInt(1, 1);
+        mInsert.setDouble(2, mScore);
+        mInsert.setLong(3, System.currentTimeMillis());
+        return mInsert.executeUpdate();
+    }
+
+    @Benchmark
+    public int addParsed() throws SQLException {
+        mScore += 0.5;
+        final PreparedStatement insert = mConnection.prepareStatement(SQL_INSERT);
+        try {
+            insert.setInt(1, 1);
+            insert.setDouble(2, mScore);
+            insert.setLong(3, System.currentTimeMillis());
+            return insert.executeUpdate();
+        } finally {
+            insert.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int addBatch() throws SQLException {
+        return addAll(BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT)
+    public int importHistory() throws SQLException {
+        return addAll(IMPORT);
+    }
+
+    private int addAll(int count) throws SQLException {
+        int rows = 0;
+        final long timestamp = System.currentTimeMillis();
+        mConnection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < count; i++) {
+                mScore += 0.5;
+                mInsert.setInt(1, 1);
+                mInsert.setDouble(2, mScore);
+                mInsert.setLong(3, timestamp);
+                rows += mInsert.executeUpdate();
+            }
+            mConnection.commit();
+        } finally {
+            mConnection.setAutoCommit(true);
+        }
+        return rows;
+    }
+}
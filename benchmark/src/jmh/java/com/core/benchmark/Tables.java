@@ -0,0 +1,39 @@
+package com.core.benchmark;
+
+import com.core.physics.FastRandom;
+import com.core.physics.ParticleEngine;
+
+/*
+ * Builds tables for the benchmarks, always from the same seed so every run
+ * simulates the same thing.
+ */
+final class Tables {
+    static final float BALL_DIAMETER = 0.004f;
+    static final long SEED = 0x50454e4755494eL;
+
+    // roughly the table of a phone, in meters
+    private static final float MIN_HORIZONTAL_BOUND = 0.025f;
+    private static final float MIN_VERTICAL_BOUND = 0.045f;
+
+    private Tables() {}
+
+    /*
+     * An engine with count balls scattered over a table big enough that they
+     * cover about a quarter of it.
+     */
+    static ParticleEngine create(int count) {
+        final ParticleEngine engine = new ParticleEngine(BALL_DIAMETER, count,
+                new FastRandom(SEED));
+        final float side = (float) Math.sqrt(count * 4.0) * BALL_DIAMETER;
+        final float horizontalBound = Math.max(MIN_HORIZONTAL_BOUND, side * 0.5f);
+        final float verticalBound = Math.max(MIN_VERTICAL_BOUND, side * 0.5f);
+        engine.setBounds(horizontalBound, verticalBound);
+
+        final FastRandom random = engine.getRandom();
+        for (int i = 0; i < count; i++) {
+            engine.addParticle((random.nextFloat() * 2 - 1) * horizontalBound,
+                    (random.nextFloat() * 2 - 1) * verticalBound);
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,257 @@
+package com.core.scenario;
+
+import com.core.game.GameWorld;
+import com.core.metrics.FrameProfiler;
+import com.core.metrics.LatencyHistogram;
+import com.core.physics.FastRandom;
+import com.core.physics.FixedStepClock;
+import com.core.physics.KinematicBody;
+import com.core.physics.ParallelSolver;
+import com.core.physics.ParticleEngine;
+import com.core.physics.WaypointPath;
+
+/**
+ * Runs the game without a device: a {@link GameWorld} driven by a
+ * {@link TiltTrace} for a number of simulated seconds, as fast as the machine
+ * can step it.
+ *
+ * The table is sized for the number of balls and everything random is seeded,
+ * so a scenario simulates exactly the same thing on every run and only the
+ * timings differ.
+ */
+public class Scenario {
+    // the same balls, cups and cup path as AccelerometerPlayActivity
+    private static final float BALL_DIAMETER = 0.004f;
+    private static final float CUP_SIZE = 0.008f;
+    private static final float CUP_PATH_EXTENT = 0.018f;
+    private static final float CUP_SPEED = 0.01f;
+
+    // roughly the table of a phone, in meters
+    private static final float MIN_HORIZONTAL_BOUND = 0.025f;
+    private static final float MIN_VERTICAL_BOUND = 0.045f;
+
+    private int mBalls = 100;
+    private int mCups = 1;
+    private double mSeconds = 60;
+    private TiltTrace mTrace = TiltTrace.forName("sweep");
+    private long mSeed = 1;
+    private int mMaxIterations = ParticleEngine.NUM_MAX_ITERATIONS;
+    private float mPenetrationTolerance;
+    private boolean mWarmStarting;
+    private boolean mContinuousCollision;
+    private int mStepHz = FixedStepClock.DEFAULT_STEP_HZ;
+    private int mSolverThreads;
+
+    public void setBalls(int balls) {
+        if (balls <= 0) {
+            throw new IllegalArgumentException("balls must be positive: " + balls);
+        }
+        mBalls = balls;
+    }
+
+    public void setCups(int cups) {
+        if (cups < 0) {
+            throw new IllegalArgumentException("cups must not be negative: " + cups);
+        }
+        mCups = cups;
+    }
+
+    public void setSeconds(double seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("seconds must be positive: " + seconds);
+        }
+        mSeconds = seconds;
+    }
+
+    public void setTrace(TiltTrace trace) {
+        mTrace = trace;
+    }
+
+    public void setSeed(long seed) {
+        mSeed = seed;
+    }
+
+    /*
+     * Solver settings, see the ParticleEngine setters of the same name.
+     */
+    public void setMaxIterations(int maxIterations) {
+        mMaxIterations = maxIterations;
+    }
+
+    public void setPenetrationTolerance(float tolerance) {
+        mPenetrationTolerance = tolerance;
+    }
+
+    public void setWarmStarting(boolean warmStarting) {
+        mWarmStarting = warmStarting;
+    }
+
+    public void setContinuousCollision(boolean continuous) {
+        mContinuousCollision = continuous;
+    }
+
+    /*
+     * Physics steps per simulated second, the scenario covers the same
+     * simulated time at any rate.
+     */
+    public void setStepHz(int stepHz) {
+        if (stepHz <= 0) {
+            throw new IllegalArgumentException("stepHz must be positive: " + stepHz);
+        }
+        mStepHz = stepHz;
+    }
+
+    /*
+     * Solves every collision pass on a ParallelSolver with this many
+     * workers, whatever the number of balls. 0, the default, keeps the
+     * engine's own solver.
+     */
+    public void setSolverThreads(int solverThreads) {
+        if (solverThreads < 0) {
+            throw new IllegalArgumentException("solverThreads must not be negative: "
+                    + solverThreads);
+        }
+        mSolverThreads = solverThreads;
+    }
+
+    public Result run() {
+        final ParticleEngine engine = new ParticleEngine(BALL_DIAMETER, mBalls,
+                new FastRandom(mSeed));
+        final float side = (float) Math.sqrt(mBalls * 4.0) * BALL_DIAMETER;
+        final float horizontalBound = Math.max(MIN_HORIZONTAL_BOUND, side * 0.5f);
+        final float verticalBound = Math.max(MIN_VERTICAL_BOUND, side * 0.5f);
+        engine.setBounds(horizontalBound, verticalBound);
+        engine.setMaxIterations(mMaxIterations);
+        engine.setPenetrationTolerance(mPenetrationTolerance);
+        engine.setWarmStarting(mWarmStarting);
+        engine.setContinuousCollision(mContinuousCollision);
+        if (mSolverThreads > 0) {
+            final ParallelSolver solver = new ParallelSolver(mSolverThreads);
+            solver.setMinParticles(0);
+            engine.setParallelSolver(solver);
+        }
+        try {
+            return simulate(engine, horizontalBound, verticalBound);
+        } finally {
+            if (engine.getParallelSolver() != null) {
+                engine.getParallelSolver().shutdown();
+            }
+        }
+    }
+
+    private Result simulate(ParticleEngine engine, float horizontalBound, float verticalBound) {
+        final FastRandom random = engine.getRandom();
+        for (int i = 0; i < mBalls; i++) {
+            engine.addParticle((random.nextFloat() * 2 - 1) * horizontalBound,
+                    (random.nextFloat() * 2 - 1) * verticalBound);
+        }
+
+        final float dT = 1.0f / mStepHz;
+        final float e = CUP_PATH_EXTENT;
+        final WaypointPath cupPath = new WaypointPath(CUP_SPEED, -e, e, -e, -e, e, -e, e, e);
+        final KinematicBody[] cups = new KinematicBody[mCups];
+        for (int i = 0; i < mCups; i++) {
+            cups[i] = new KinematicBody(CUP_SIZE, CUP_SIZE);
+            cups[i].setPath(cupPath.offset(0, 0));
+        }
+        GameWorld.spreadAlongPath(cups, dT);
+
+        final GameWorld world = new GameWorld(engine, cups);
+        final FrameProfiler profiler = new FrameProfiler();
+        world.setProfiler(profiler);
+
+        final TiltTrace trace = mTrace;
+        final float[] tilt = new float[2];
+        final long steps = (long) Math.ceil(mSeconds / dT);
+        final long start = System.nanoTime();
+        for (long step = 0; step < steps; step++) {
+            trace.tiltAt(step * (double) dT, tilt);
+            world.step(tilt[0], tilt[1], dT);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        return new Result(this, steps, elapsed, profiler, world.getCaptureCount(),
+                world.getRefillCount(), engine.getParticleCount());
+    }
+
+    /**
+     * What a scenario did and how fast.
+     */
+    public static class Result {
+        private final String mDescription;
+        private final long mSteps;
+        private final long mElapsedNanos;
+        private final LatencyHistogram mStepNanos;
+        private final LatencyHistogram mIterations;
+        private final int mCaptures;
+        private final int mRefills;
+        private final int mFinalBalls;
+
+        Result(Scenario scenario, long steps, long elapsedNanos, FrameProfiler profiler,
+               int captures, int refills, int finalBalls) {
+            mDescription = "balls=" + scenario.mBalls + " cups=" + scenario.mCups
+                    + " seconds=" + scenario.mSeconds + " trace=" + scenario.mTrace.getName()
+                    + " seed=" + scenario.mSeed
+                    + " max-iterations=" + scenario.mMaxIterations
+                    + " tolerance=" + scenario.mPenetrationTolerance
+                    + " warm-start=" + scenario.mWarmStarting
+                    + " continuous=" + scenario.mContinuousCollision
+                    + " step-hz=" + scenario.mStepHz
+                    + " solver-threads=" + scenario.mSolverThreads;
+            mSteps = steps;
+            mElapsedNanos = elapsedNanos;
+            mStepNanos = profiler.getPhase(FrameProfiler.PHASE_STEP);
+            mIterations = profiler.getIterations();
+            mCaptures = captures;
+            mRefills = refills;
+            mFinalBalls = finalBalls;
+        }
+
+        public long getSteps() {
+            return mSteps;
+        }
+
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        public double getStepsPerSecond() {
+            return mSteps * 1e9 / Math.max(1, mElapsedNanos);
+        }
+
+        public LatencyHistogram getStepNanos() {
+            return mStepNanos;
+        }
+
+        public LatencyHistogram getIterations() {
+            return mIterations;
+        }
+
+        public int getCaptures() {
+            return mCaptures;
+        }
+
+        public int getRefills() {
+            return mRefills;
+        }
+
+        public int getFinalBalls() {
+            return mFinalBalls;
+        }
+
+        @Override
+        public String toString() {
+            return mDescription
+                    + "\n  steps " + mSteps + " in " + mElapsedNanos / 1000000 + " ms, "
+                    + Math.round(getStepsPerSecond()) + " steps/s"
+                    + "\n  step us p50/p95/p99/max " + mStepNanos.getPercentile(0.50) / 1000
+                    + "/" + mStepNanos.getPercentile(0.95) / 1000
+                    + "/" + mStepNanos.getPercentile(0.99) / 1000
+                    + "/" + mStepNanos.getMax() / 1000
+                    + "\n  solver iterations mean/p99/max " + mIterations.getMean()
+                    + "/" + mIterations.getPercentile(0.99) + "/" + mIterations.getMax()
+                    + "\n  captures " + mCaptures + ", refills " + mRefills
+                    + ", balls left " + mFinalBalls;
+        }
+    }
+}
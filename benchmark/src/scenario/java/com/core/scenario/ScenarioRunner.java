@@ -0,0 +1,80 @@
+package com.core.scenario;
+
+/**
+ * Command line entry point for {@link Scenario}, e.g.
+ *
+ * <pre>
+ * ./gradlew :benchmark:scenario -PscenarioArgs="--balls=1000 --cups=4 --seconds=600
+ *         --trace=shake --min-steps-per-second=2000"
+ * </pre>
+ *
+ * Prints what the scenario did and exits with status 1 if it stepped slower
+ * than --min-steps-per-second, so a CI job fails on a throughput regression.
+ */
+public class ScenarioRunner {
+
+    public static void main(String[] args) {
+        final Scenario scenario = new Scenario();
+        double minStepsPerSecond = 0;
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                usage("bad argument " + arg);
+                return;
+            }
+            final String name = arg.substring(2, eq);
+            final String value = arg.substring(eq + 1);
+            try {
+                if ("balls".equals(name)) {
+                    scenario.setBalls(Integer.parseInt(value));
+                } else if ("cups".equals(name)) {
+                    scenario.setCups(Integer.parseInt(value));
+                } else if ("seconds".equals(name)) {
+                    scenario.setSeconds(Double.parseDouble(value));
+                } else if ("trace".equals(name)) {
+                    scenario.setTrace(TiltTrace.forName(value));
+                } else if ("seed".equals(name)) {
+                    scenario.setSeed(Long.parseLong(value));
+                } else if ("max-iterations".equals(name)) {
+                    scenario.setMaxIterations(Integer.parseInt(value));
+                } else if ("tolerance".equals(name)) {
+                    scenario.setPenetrationTolerance(Float.parseFloat(value));
+                } else if ("warm-start".equals(name)) {
+                    scenario.setWarmStarting(Boolean.parseBoolean(value));
+                } else if ("continuous".equals(name)) {
+                    scenario.setContinuousCollision(Boolean.parseBoolean(value));
+                } else if ("step-hz".equals(name)) {
+                    scenario.setStepHz(Integer.parseInt(value));
+                } else if ("solver-threads".equals(name)) {
+                    scenario.setSolverThreads(Integer.parseInt(value));
+                } else if ("min-steps-per-second".equals(name)) {
+                    minStepsPerSecond = Double.parseDouble(value);
+                } else {
+                    usage("unknown option " + name);
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                usage(e.getMessage());
+                return;
+            }
+        }
+
+        final Scenario.Result result = scenario.run();
+        System.out.println(result);
+        if (result.getStepsPerSecond() < minStepsPerSecond) {
+            System.out.println("FAILED: " + Math.round(result.getStepsPerSecond())
+                    + " steps/s is below the minimum of " + Math.round(minStepsPerSecond));
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        System.out.println(error);
+        System.out.println("usage: ScenarioRunner [--balls=N] [--cups=N] [--seconds=S]"
+                + " [--trace=constant|shake|sweep] [--seed=N] [--max-iterations=N]"
+                + " [--tolerance=METERS] [--warm-start=true|false]"
+                + " [--continuous=true|false] [--step-hz=N] [--solver-threads=N]"
+                + " [--min-steps-per-second=N]");
+        System.exit(2);
+    }
+}
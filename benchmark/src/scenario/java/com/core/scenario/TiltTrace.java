@@ -0,0 +1,80 @@
+package com.core.scenario;
+
+/**
+ * Synthetic accelerometer input for a scenario: the tilt, in m/s^2 like the
+ * sensor reports it, as a function of simulated time.
+ */
+public abstract class TiltTrace {
+    private static final float GRAVITY = 9.81f;
+
+    private final String mName;
+
+    protected TiltTrace(String name) {
+        mName = name;
+    }
+
+    /*
+     * Stores the tilt at the given time in tilt[0] and tilt[1].
+     */
+    public abstract void tiltAt(double seconds, float[] tilt);
+
+    public String getName() {
+        return mName;
+    }
+
+    /*
+     * The phone held still at a fixed angle.
+     */
+    public static TiltTrace constant(final float sx, final float sy) {
+        return new TiltTrace("constant") {
+            @Override
+            public void tiltAt(double seconds, float[] tilt) {
+                tilt[0] = sx;
+                tilt[1] = sy;
+            }
+        };
+    }
+
+    /*
+     * The phone shaken left and right, amplitude in m/s^2.
+     */
+    public static TiltTrace shake(final float amplitude, final float hz) {
+        return new TiltTrace("shake") {
+            @Override
+            public void tiltAt(double seconds, float[] tilt) {
+                tilt[0] = (float) (amplitude * Math.sin(2 * Math.PI * hz * seconds));
+                tilt[1] = 0;
+            }
+        };
+    }
+
+    /*
+     * The phone tilted by a fixed amount, with the low side going round once
+     * per period.
+     */
+    public static TiltTrace sweep(final float magnitude, final float periodSeconds) {
+        return new TiltTrace("sweep") {
+            @Override
+            public void tiltAt(double seconds, float[] tilt) {
+                final double angle = 2 * Math.PI * seconds / periodSeconds;
+                tilt[0] = (float) (magnitude * Math.cos(angle));
+                tilt[1] = (float) (magnitude * Math.sin(angle));
+            }
+        };
+    }
+
+    /*
+     * The traces the command line knows by name.
+     */
+    public static TiltTrace forName(String name) {
+        if ("constant".equals(name)) {
+            return constant(0.3f * GRAVITY, -0.5f * GRAVITY);
+        } else if ("shake".equals(name)) {
+            return shake(GRAVITY, 4);
+        } else if ("sweep".equals(name)) {
+            return sweep(0.5f * GRAVITY, 8);
+        }
+        throw new IllegalArgumentException("unknown trace " + name
+                + ", expected constant, shake or sweep");
+    }
+}